@@ -1,55 +1,103 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
 /**
  * The Calendar class serves as the main system class (or domain class)
  * responsible for managing the collection of registered users and the overall
  * collection of scheduled events within the shared calendar system.
- * It manages array capacity dynamically for events and holds user data statically.
+ * It keeps events in a columnar EventStore whose capacity is managed dynamically,
+ * and users in a growable directory that assigns each of them a dense integer id.
+ * The indexes (per user, per time slot, per number of participants and by name)
+ * refer to events by their handles in the store.
+ * Readers that must not be disturbed by later changes (such as 'show' and 'top'
+ * served alongside scheduling) can take an immutable CalendarSnapshot: the
+ * structures it refers to are marked as shared and copied before they change.
  */
-public class Calendar {
+public class Calendar implements CalendarView {
 
     // Instance Variables (State)
-    private String[] users;
-    private int numUsers; // Number of currently registered users
-    private int size;  // Number of valid Event objects stored in the events array
-    private Event[] events;   // Array reference to the collection of events
+    private UserDirectory users; // Registered users and their ids
+    private EventStore store; // Columnar storage of the events
+    private long[] occupancy; // Weekly occupancy word of each user (indexed by user id)
+    private EventListTable userEvents; // Chronological events of each user (indexed by user id)
+    private long[][] busyUsers; // For each weekly slot, a bitset of the ids of the users busy in it
+    private EventList[] timeSlots; // Events of each weekly slot, in chronological slot order
+    private EventList[][] byNumUsers; // Events with each number of participants, one list per weekly slot
+    private int[] numEventsByNumUsers; // Number of events with each number of participants
+    private int maxNumUsers; // Largest number of participants of a stored event (0 if none)
+    private NameIndex eventIndex; // Handle of each event in the store, by name
+    private int conflictUser; // Id of the user who blocked the last rejected schedule
+    private int conflictSlot; // Weekly slot where that user was busy
+    private long version; // Number of changes made so far (identifies each state)
+    private CalendarSnapshot snapshot; // Last snapshot taken, reused while the version is unchanged
 
     // Constant
-    private final int MAX_USERS = 100;// Constraint given for maximum number of users
+    private static final int INITIAL_USERS = 16; // Initial capacity of the per-user arrays
+    private static final int MIN_EVENTS = 16; // Smallest capacity of a non-empty event store
+    private static final int FIRST_HOUR = 8; // First bookable hour of the day
+    private static final int HOURS_PER_DAY = 12; // Bookable hours per day (8 to 20)
+    private static final int DAYS = 5; // Days of the week (1 to 5)
+    private static final int NOT_FOUND = NameIndex.NOT_FOUND; // Returned by searches that find nothing
+    private static final int SAVE_FORMAT = 0x43414C31; // First word of a saved calendar ("CAL1")
+    private static final VarHandle BUSY_WORD = MethodHandles.arrayElementVarHandle(long[].class); // Atomic access to a word of the busy bitsets
 
     /**
-     * Constructor: Initializes the collections (users array and events array)
-     * and initializes size counters to zero.
+     * Constructor: Initializes the collections (users directory and event store)
+     * and their indexes, all empty.
      */
     public Calendar() {
-        // Initializes the users array with the fixed maximum capacity.
-        users = new String[MAX_USERS];
-        numUsers = 0;
-        // Initializes the events array.
-        size=0;
-        events = new Event[size];
+        // Initializes the users directory, which grows as users are added.
+        users = new UserDirectory();
+        occupancy = new long[INITIAL_USERS];
+        userEvents = new EventListTable();
+        busyUsers = new long[DAYS*HOURS_PER_DAY][bitsetLength(INITIAL_USERS)];
+        // Initializes the event store.
+        store = new EventStore();
+        eventIndex = new NameIndex();
+        // One list per (day, start time) pair, so the whole collection is always
+        // in chronological order when the lists are visited one after the other.
+        timeSlots = new EventList[DAYS*HOURS_PER_DAY];
+        for (int i=0;i<timeSlots.length;i++){
+            timeSlots[i]=new EventList();
+        }
+        // Lists by number of participants are created as the counts appear.
+        byNumUsers = new EventList[MIN_EVENTS][];
+        numEventsByNumUsers = new int[MIN_EVENTS];
+        maxNumUsers = 0;
+        conflictUser = NOT_FOUND;
+        conflictSlot = NOT_FOUND;
+        version = 0;
+        snapshot = null;
     }
 
     /**
      * Checks if a specific user exists within the stored collection of users.
-     * This method performs a linear search through the array up to numUsers.
+     * This method looks the name up in the users directory.
      * @param user The username (String) to search for.
      * @return true if the user is found, false otherwise.
      */
     public boolean doesUserExist(String user){
-        boolean result=false;
-        int i=0;
-        while (i<numUsers&&!result) {
-            if(users[i].equals(user)){
-                result=true;
-            }
-            i++;
-        }
-        return result;
+        return searchUserIndex(user)!=NOT_FOUND;
+    }
+
+    /**
+     * Auxiliary method (private selector) that finds the id of a user,
+     * which is also its position in the per-user arrays (such as occupancy).
+     * @param user The username (String) to search for.
+     * @return The id of the user, or NOT_FOUND if the user is not registered.
+     * @pre user != null
+     */
+    private int searchUserIndex(String user){
+        return users.getId(user);
     }
 
     /**
      * Adds a new user name to the system.
      * @param user The name of the user to be registered.
-     * @pre numUsers < MAX_USERS (Space must be available to add a user).
      * @pre !doesUserExist(user)
      * The user must not already be registered,
      * although this check is typically handled by the client/
@@ -57,59 +105,578 @@ public class Calendar {
      * as per event constraints.
      */
     public void addUser(String user){
-        // Adds the user at the current 'numUsers' position and then increments the counter.
-        users[numUsers++]=user;
+        version++;
+        if(users.size()==occupancy.length){
+            // Doubles the per-user arrays so that the next id has a position.
+            resizeUsers(occupancy.length*2);
+        }
+        // Registers the user, which receives the next id.
+        int id=users.register(user);
+        // The new user starts with an empty week (occupancy word 0) and no events.
+        occupancy[id]=0;
+        userEvents.set(id,new EventList());
     }
 
     /**
-     * Auxiliary method (private selector) to check if the internal event array
-     * needs to be resized to accommodate a new element.
-     * @return true if the array capacity (events.length) is equal to the number
-     * of valid elements (size), false otherwise.
+     * Makes sure the calendar can hold a given number of users without enlarging
+     * its per-user arrays again. Used before bulk loads (such as the initial file)
+     * whose number of users is known in advance.
+     * @param capacity The number of users the calendar must be able to hold.
+     * @pre capacity >= 0
      */
-    private boolean isFull(){
-        return size==events.length;
+    public void ensureUserCapacity(int capacity){
+        users.ensureCapacity(capacity);
+        if(capacity>occupancy.length){
+            resizeUsers(capacity);
+        }
     }
 
     /**
-     * Auxiliary method (private mutator) to dynamically increase the capacity
-     * of the internal event array.
-     * @pre events.lenhght != null
+     * Auxiliary method (private mutator) that moves the per-user arrays (occupancy words
+     * and busy bitsets) to arrays with room for a given number of users.
+     * The table of event lists grows by itself (see EventListTable.set).
+     * @param capacity The new number of users the arrays can hold.
+     * @pre capacity >= number of registered users
      */
-    private void grow(){
-        // Creates a new, larger array (current size + 1)
-        Event[] temporary=new Event[events.length+1];
+    private void resizeUsers(int capacity){
+        int numUsers=users.size();
+        long[] temporary=new long[capacity];
+        System.arraycopy(occupancy,0,temporary,0,numUsers);
+        occupancy=temporary;
+        for (int slot=0;slot<busyUsers.length;slot++){
+            busyUsers[slot]=Arrays.copyOf(busyUsers[slot],bitsetLength(capacity));
+        }
+    }
+
+    /**
+     * Auxiliary method (private selector) that computes the number of 64-bit words
+     * of a bitset with one bit per user.
+     * @param numUsers The number of users the bitset must hold.
+     * @return The number of words.
+     * @pre numUsers >= 0
+     */
+    private static int bitsetLength(int numUsers){
+        return (numUsers+63)/64;
+    }
+
+    /**
+     * Auxiliary method (package selector, used by ConcurrentCalendar) that checks if
+     * the event store can take a new event without being compacted or resized.
+     * @return true if insertEvent can be called, false if grow must be called first.
+     */
+    boolean hasRoom(){
+        return !store.isFull();
+    }
+
+    /**
+     * Auxiliary method (package mutator, also used by ConcurrentCalendar) that makes
+     * room in the event store for a new event. If at least half of the handles belong
+     * to removed events, the store is compacted; otherwise its capacity is doubled.
+     * Either way the cost of copying is amortized to a constant per added event.
+     * Compaction renumbers the handles, so no handle may be held across this call.
+     */
+    void grow(){
+        if(store.isFull()){
+            if(store.getNumHandles()>0&&2*store.getNumRemoved()>=store.getNumHandles()){
+                compact(store.getCapacity());
+            }
+            else{
+                store.resize(Math.max(MIN_EVENTS,store.getCapacity()*2));
+            }
+        }
+    }
+
+    /**
+     * Auxiliary method (private mutator) that compacts the event store, reclaiming the
+     * handles of removed events, and renumbers the handles held by every index.
+     * Only the users that participate in a remaining event have handles in their
+     * lists, so only their lists are renumbered, each once, found through the
+     * participants of the remaining events.
+     * @param capacity The capacity of the compacted store.
+     * @pre capacity >= getEventNumber()
+     */
+    private void compact(int capacity){
+        int[] map=store.compact(capacity);
+        long[] remapped=new long[bitsetLength(users.size())]; // Users already renumbered
+        for (int handle=0;handle<store.getNumHandles();handle++){
+            for (int i=0;i<store.getNumUsers(handle);i++){
+                int id=store.getUserId(handle,i);
+                if((remapped[id>>>6]&(1L<<id))==0){
+                    remapped[id>>>6]|=1L<<id;
+                    userEvents.writable(id).remap(map);
+                }
+            }
+        }
+        for (int i=0;i<timeSlots.length;i++){
+            timeSlots[i].remap(map);
+        }
+        for (int num=0;num<byNumUsers.length;num++){
+            if(byNumUsers[num]!=null){
+                for (int slot=0;slot<byNumUsers[num].length;slot++){
+                    writable(byNumUsers[num],slot).remap(map);
+                }
+            }
+        }
+        for (int handle=0;handle<store.getNumHandles();handle++){
+            eventIndex.put(store.getName(handle),handle);
+        }
+    }
 
-        // Copies all existing elements to the new array
-        for (int i=0; i<size;i++){
-            temporary[i]=events[i];
+    /**
+     * Makes sure the event store can hold a given number of events
+     * without being resized again. Used before bulk loads (such as the
+     * initial file) whose number of events is known in advance.
+     * Handles of removed events are reclaimed first if there are any.
+     * The index of event names is enlarged for that many events as well.
+     * @param capacity The number of events the store must be able to hold.
+     * @pre capacity >= getEventNumber()
+     */
+    public void ensureCapacity(int capacity){
+        eventIndex.ensureCapacity(capacity);
+        if(store.getCapacity()-store.getNumRemoved()<capacity){
+            if(store.getNumRemoved()>0){
+                compact(capacity);
+            }
+            else{
+                store.resize(capacity);
+            }
         }
-        // Updates the reference to point to the new, larger array
-        events=temporary;
     }
 
     /**
-     * Adds a new event to the collection. If the internal array is full, it is
-     * resized before insertion.
+     * Adds a new event to the collection. If the event store is full, it is
+     * compacted or resized before insertion.
      * @param event The name of the event (unique identifier).
      * @param day The day of the week (1-5).
      * @param startTime The start hour (8-19).
      * @param endTime The end hour (9-20).
      * @param eventUsers Array containing the names of the participants (proponent first).
+     * The names are interned to user ids before the event is stored.
      * @pre All required parameters must be valid
      * (checked outside/before this method, typically in the Main class,
      * according to the schedule constraints).
+     * @pre All participating users must be registered.
      * @pre The event name must be unique (Event already exists check).
      * @pre All participating users must be available
      * (Proposer not available/Some user not available checks).
      */
     public void addEvent(String event,int day,int startTime,int endTime,String[] eventUsers){
-        if (isFull()){
-            grow(); // Resizes the array capacity
+        addEvent(event,day,startTime,endTime,searchUserIndex(eventUsers[0]),toSortedIds(eventUsers));
+    }
+
+    /**
+     * Auxiliary method (package mutator, also used by ConcurrentCalendar) that adds
+     * a new event whose participants are already given as user ids. If the event store
+     * is full, it is compacted or resized before insertion.
+     * @param event The name of the event (unique identifier).
+     * @param day The day of the week (1-5).
+     * @param startTime The start hour (8-19).
+     * @param endTime The end hour (9-20).
+     * @param proposer The id of the proponent.
+     * @param ids The ids of the participants (proponent included), in ascending order.
+     * @pre Same as addEvent.
+     */
+    void addEvent(String event,int day,int startTime,int endTime,int proposer,int[] ids){
+        grow(); // Makes room in the store if needed
+        int handle=insertEvent(event,day,startTime,endTime,proposer,ids);
+        // Marks the hours of the event as busy in the week of every participant
+        // and adds it to their event lists.
+        updateParticipants(handle,true);
+    }
+
+    /**
+     * Auxiliary method (package mutator, also used by ConcurrentCalendar) that stores
+     * a new event and files it in the structures shared by all events (the name index,
+     * its slot and its number of participants), but not yet with its participants
+     * (see updateParticipants).
+     * @param event The name of the event (unique identifier).
+     * @param day The day of the week (1-5).
+     * @param startTime The start hour (8-19).
+     * @param endTime The end hour (9-20).
+     * @param proposer The id of the proponent.
+     * @param ids The ids of the participants (proponent included), in ascending order.
+     * @return The handle of the new event.
+     * @pre Same as addEvent, and hasRoom().
+     */
+    int insertEvent(String event,int day,int startTime,int endTime,int proposer,int[] ids){
+        version++;
+        // Stores the fields of the event, which receives the next handle.
+        int handle=store.add(event,day,startTime,endTime,proposer,ids);
+        eventIndex.put(event,handle);
+        // Files the event under its (day, start time) slot and its number of participants.
+        int key=slotIndex(day,startTime);
+        timeSlots[key].add(handle,key);
+        addByNumUsers(handle,key);
+        return handle;
+    }
+
+    /**
+     * Attempts to schedule a new event, checking every constraint of the 'schedule'
+     * command and adding the event only if all of them hold.
+     * The constraints are reported in the same priority order as the separate checks
+     * (doesAllUserExist, doesEventExist, isUserOccupied for the proponent and
+     * areAllUserOccupied for the others), but each name is resolved to its id only once:
+     * the occupancy words of the ids are then tested in a single pass, and the ids are
+     * reused to store the event. The cost is O(participants).
+     * When the result is PROPOSER_NOT_AVAILABLE or SOME_USER_NOT_AVAILABLE, the user
+     * that caused it (the proponent, or the first busy participant) and the first
+     * busy hour are kept as a by-product of the same pass (see getConflictUser and
+     * getConflictEvent).
+     * @param event The name of the event.
+     * @param day The day of the week (1-5).
+     * @param startTime The start hour (8-19).
+     * @param endTime The end hour (9-20).
+     * @param eventUsers Array containing the names of the participants (proponent first).
+     * @return SCHEDULED if the event was added, otherwise the first constraint violated.
+     * @pre event != null && eventUsers != null && eventUsers.length >= 1
+     * @pre day >= 1 && day <= 5 && startTime >= 8 && endTime <= 20 && startTime < endTime
+     */
+    public ScheduleResult trySchedule(String event,int day,int startTime,int endTime,String[] eventUsers){
+        return schedule(event,day,startTime,endTime,resolveIds(eventUsers));
+    }
+
+    /**
+     * Attempts to schedule a batch of events, with the same results as calling
+     * trySchedule for each of them in the given order: an event that is accepted
+     * makes its participants busy for the events after it in the batch.
+     * The names of the participants of the whole batch are resolved to ids in a
+     * first pass, and the store is sized once for the whole batch, so the second
+     * pass only tests occupancy masks and adds the accepted events.
+     * @param names The names of the events.
+     * @param days The days of the events (1-5).
+     * @param startTimes The start hours of the events (8-19).
+     * @param endTimes The end hours of the events (9-20).
+     * @param eventUsers The participants of each event (proponent first).
+     * @return The result of each event, in the order of the batch.
+     * @pre All arrays have the same length, and each event satisfies the
+     * preconditions of trySchedule.
+     */
+    public ScheduleResult[] scheduleBatch(String[] names,int[] days,int[] startTimes,int[] endTimes,String[][] eventUsers){
+        int[][] ids=new int[names.length][];
+        for (int i=0;i<names.length;i++){
+            ids[i]=resolveIds(eventUsers[i]);
+        }
+        ensureCapacity(store.getNumEvents()+names.length);
+        ScheduleResult[] results=new ScheduleResult[names.length];
+        for (int i=0;i<names.length;i++){
+            results[i]=schedule(names[i],days[i],startTimes[i],endTimes[i],ids[i]);
+        }
+        return results;
+    }
+
+    /**
+     * Auxiliary method (package selector, also used by ConcurrentCalendar) that resolves
+     * the names of the participants of an event to their ids.
+     * Names that are not registered give NOT_FOUND.
+     * @param eventUsers The names of the participants (proponent first).
+     * @return A new array with the id of each participant, in the same order.
+     */
+    int[] resolveIds(String[] eventUsers){
+        int[] ids=new int[eventUsers.length];
+        for (int i=0;i<ids.length;i++){
+            ids[i]=searchUserIndex(eventUsers[i]);
+        }
+        return ids;
+    }
+
+    /**
+     * Auxiliary method (private mutator) with the checks of trySchedule, for participants
+     * already resolved to ids. The ids are visited once, in order, stopping at the first
+     * one that is not registered; the event is added only if every constraint holds.
+     * @param event The name of the event.
+     * @param day The day of the week (1-5).
+     * @param startTime The start hour (8-19).
+     * @param endTime The end hour (9-20).
+     * @param ids The ids of the participants (proponent first), NOT_FOUND for unknown names.
+     * The array is reused (sorted) to store the event.
+     * @return SCHEDULED if the event was added, otherwise the first constraint violated.
+     * @pre Same as trySchedule.
+     */
+    private ScheduleResult schedule(String event,int day,int startTime,int endTime,int[] ids){
+        long mask=timeMask(day,startTime,endTime);
+        boolean registered=true;
+        boolean proposerBusy=false;
+        boolean guestBusy=false;
+        int busyUser=NOT_FOUND;
+        int i=0;
+        while (i<ids.length&&registered) {
+            if(ids[i]==NOT_FOUND){
+                registered=false;
+            }
+            else if((occupancy[ids[i]]&mask)!=0){
+                if(i==0){
+                    proposerBusy=true;
+                    busyUser=ids[i];
+                }
+                else if(!guestBusy){
+                    guestBusy=true;
+                    if(!proposerBusy){
+                        busyUser=ids[i];
+                    }
+                }
+            }
+            i++;
+        }
+        ScheduleResult result;
+        if(!registered){
+            result=ScheduleResult.SOME_USER_NOT_REGISTERED;
+        }
+        else if(doesEventExist(event)){
+            result=ScheduleResult.EVENT_ALREADY_EXISTS;
+        }
+        else if(proposerBusy||guestBusy){
+            result=proposerBusy?ScheduleResult.PROPOSER_NOT_AVAILABLE:ScheduleResult.SOME_USER_NOT_AVAILABLE;
+            conflictUser=busyUser;
+            conflictSlot=Long.numberOfTrailingZeros(occupancy[busyUser]&mask);
+        }
+        else{
+            int proposer=ids[0];
+            Arrays.sort(ids);
+            addEvent(event,day,startTime,endTime,proposer,ids);
+            result=ScheduleResult.SCHEDULED;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the user that caused the last schedule rejected for availability
+     * (PROPOSER_NOT_AVAILABLE or SOME_USER_NOT_AVAILABLE) by trySchedule.
+     * @return The name of the user.
+     * @pre The last call to trySchedule returned one of those results
+     * and no event was added or cancelled since.
+     */
+    public String getConflictUser(){
+        return users.getName(conflictUser);
+    }
+
+    /**
+     * Returns the existing event that caused the last schedule rejected for availability
+     * by trySchedule. The event is found by a binary search in the event list of the
+     * conflicting user, only when this method is called, so rejections cost nothing extra
+     * unless the diagnostics are requested.
+     * @return The name of the event.
+     * @pre The last call to trySchedule returned PROPOSER_NOT_AVAILABLE or
+     * SOME_USER_NOT_AVAILABLE and no event was added or cancelled since.
+     */
+    public String getConflictEvent(){
+        return store.getName(userEvents.get(conflictUser).findLastAtOrBefore(conflictSlot));
+    }
+
+    /**
+     * Adds a batch of events to the collection, with the same result as calling
+     * addEvent for each of them in the given order.
+     * The batch is first put in chronological order with a stable counting sort
+     * (sortByTime), so every event is then appended at the end of its time slot,
+     * participant and participant count lists instead of being shifted into place.
+     * Used for bulk loads such as the initial file.
+     * @param names The names of the events.
+     * @param days The days of the events (1-5).
+     * @param startTimes The start hours of the events (8-19).
+     * @param endTimes The end hours of the events (9-20).
+     * @param eventUsers The participants of each event (proponent first).
+     * @pre All arrays have the same length, and each event satisfies the
+     * preconditions of addEvent (including availability with respect to
+     * the events added before it).
+     */
+    public void addEvents(String[] names,int[] days,int[] startTimes,int[] endTimes,String[][] eventUsers){
+        ensureCapacity(store.getNumEvents()+names.length);
+        int[] order=sortByTime(days,startTimes);
+        for (int i=0;i<order.length;i++){
+            int j=order[i];
+            addEvent(names[j],days[j],startTimes[j],endTimes[j],eventUsers[j]);
+        }
+    }
+
+    /**
+     * Auxiliary method (package selector, also used by EventSortBenchmark) that sorts
+     * a batch of events chronologically with a counting sort over the 60 weekly slots:
+     * the events of each slot are counted, the counts give the first position of each
+     * slot, and every event is then placed after the ones of its slot seen before it.
+     * This takes linear time and is stable, so events of the same slot keep their
+     * relative order.
+     * @param days The days of the events (1-5).
+     * @param startTimes The start hours of the events (8-19).
+     * @return The positions of the events in chronological order.
+     * @pre days.length == startTimes.length
+     */
+    static int[] sortByTime(int[] days,int[] startTimes){
+        // first[s+1] counts the events of slot s, then becomes the first position of slot s+1.
+        int[] first=new int[DAYS*HOURS_PER_DAY+1];
+        for (int i=0;i<days.length;i++){
+            first[slotIndex(days[i],startTimes[i])+1]++;
+        }
+        for (int s=1;s<first.length;s++){
+            first[s]+=first[s-1];
+        }
+        int[] order=new int[days.length];
+        for (int i=0;i<days.length;i++){
+            order[first[slotIndex(days[i],startTimes[i])]++]=i;
+        }
+        return order;
+    }
+
+    /**
+     * Auxiliary method (private selector) that interns a list of user names,
+     * producing the ascending array of ids stored in an Event.
+     * Repeated names are kept, so the number of participants is unchanged.
+     * @param eventUsers The names of the users.
+     * @return A new array with the ids of the users, sorted in ascending order.
+     * @pre All names are registered.
+     */
+    private int[] toSortedIds(String[] eventUsers){
+        int[] ids=resolveIds(eventUsers);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Auxiliary method (private mutator) that files an event with the events that have
+     * the same number of participants, at the end of the list of its weekly slot, like
+     * the time slot lists. The lists of a count are created (and the array of counts
+     * enlarged) when the first event with that count appears.
+     * Since the events of a list all have the same key, adding one never moves the
+     * events already in it, whatever the number of events with that count.
+     * @param handle The handle of the event being added.
+     * @param key The weekly slot of the event.
+     * @pre handle is a handle of the store
+     */
+    private void addByNumUsers(int handle,int key){
+        int num=store.getNumUsers(handle);
+        if(num>=byNumUsers.length){
+            int length=Math.max(num+1,byNumUsers.length*2);
+            byNumUsers=Arrays.copyOf(byNumUsers,length);
+            numEventsByNumUsers=Arrays.copyOf(numEventsByNumUsers,length);
+        }
+        if(byNumUsers[num]==null){
+            byNumUsers[num]=new EventList[DAYS*HOURS_PER_DAY];
+            for (int slot=0;slot<byNumUsers[num].length;slot++){
+                byNumUsers[num][slot]=new EventList();
+            }
+        }
+        writable(byNumUsers[num],key).add(handle,key);
+        numEventsByNumUsers[num]++;
+        maxNumUsers=Math.max(maxNumUsers,num);
+    }
+
+    /**
+     * Auxiliary method (private mutator) that removes an event from the list of its
+     * weekly slot among the events with the same number of participants. If it was
+     * the last event with the largest count, the largest count moves down to the next
+     * count that has events.
+     * @param handle The handle of the event being cancelled.
+     * @param key The weekly slot of the event.
+     * @pre handle is a handle of the store
+     */
+    private void removeByNumUsers(int handle,int key){
+        int num=store.getNumUsers(handle);
+        writable(byNumUsers[num],key).remove(handle,key);
+        numEventsByNumUsers[num]--;
+        while(maxNumUsers>0&&numEventsByNumUsers[maxNumUsers]==0){
+            maxNumUsers--;
+        }
+    }
+
+    /**
+     * Auxiliary method (private mutator) that prepares a list for a change: if the list
+     * is shared with a snapshot, it is replaced in its array by a private copy.
+     * The per-count lists are prepared here (each count has an array of lists, one per
+     * weekly slot); the per-user lists are prepared by their table (see EventListTable.writable).
+     * @param lists The array holding the list.
+     * @param i The position of the list in the array.
+     * @return The list at that position, which may now be changed.
+     * @pre lists[i] != null
+     */
+    private static EventList writable(EventList[] lists,int i){
+        if(lists[i].isShared()){
+            lists[i]=lists[i].copy();
+        }
+        return lists[i];
+    }
+
+    /**
+     * Auxiliary method (private selector) that numbers the weekly one-hour slots
+     * in chronological order, from 0 (day 1 at 8) to 59 (day 5 at 19).
+     * @param day The day of the week (1 to 5).
+     * @param hour The hour (8 to 19).
+     * @return The slot number.
+     * @pre day >= 1 && day <= 5 && hour >= 8 && hour <= 19
+     */
+    private static int slotIndex(int day,int hour){
+        return (day-1)*HOURS_PER_DAY+hour-FIRST_HOUR;
+    }
+
+    /**
+     * Auxiliary method (package selector, also used by ConcurrentCalendar) that builds
+     * the occupancy mask of a time slot.
+     * The week is a 60-bit word: bit (day-1)*12+(hour-8) is set when the hour
+     * starting at 'hour' on 'day' is taken, so [startTime, endTime) on one day
+     * is a run of consecutive bits.
+     * @param day The day of the week (1 to 5).
+     * @param startTime The start hour (8 to 19).
+     * @param endTime The end hour (9 to 20).
+     * @return The mask with the bits of the slot set.
+     * @pre day >= 1 && day <= 5 && startTime >= 8 && endTime <= 20 && startTime < endTime
+     */
+    static long timeMask(int day,int startTime,int endTime){
+        return ((1L<<(endTime-startTime))-1)<<slotIndex(day,startTime);
+    }
+
+    /**
+     * Checks if a time slot lies within the bookable week: a day from 1 to 5 and
+     * an interval of whole hours between 8 and 20 that is not empty.
+     * @param day The day of the week.
+     * @param startTime The start hour.
+     * @param endTime The end hour.
+     * @return true if the slot is valid, false otherwise.
+     */
+    public static boolean isValidSlot(int day,int startTime,int endTime){
+        return day>=1&&day<=DAYS&&startTime>=FIRST_HOUR&&startTime<endTime
+                &&endTime<=FIRST_HOUR+HOURS_PER_DAY;
+    }
+
+    /**
+     * Auxiliary method (package mutator, also used by ConcurrentCalendar) that registers
+     * or unregisters an event with each of its participants: the hours of the event are
+     * set or cleared in their occupancy words and in the busy bitsets of those hours,
+     * and the event is added to or removed from their event lists.
+     * A user listed twice in the event is handled once.
+     * Clearing is safe because the participants of an event are never
+     * occupied by another event at the same time (schedule constraints).
+     * Nothing is changed but the data of the participants and the words of the busy
+     * bitsets that hold their bits. Each word holds the bits of 64 consecutive ids, so
+     * users updated by different threads may share it (see ConcurrentCalendar): their
+     * bits are set and cleared with atomic read-modify-write operations.
+     * @param handle The handle of the event being added or cancelled.
+     * @param added true when the event is being added, false when it is cancelled.
+     * @pre handle is a handle of the store
+     */
+    void updateParticipants(int handle,boolean added){
+        int day=store.getDay(handle);
+        int startTime=store.getStartTime(handle);
+        int endTime=store.getEndTime(handle);
+        int key=slotIndex(day,startTime);
+        long mask=timeMask(day,startTime,endTime);
+        for (int i=0;i<store.getNumUsers(handle);i++){
+            int index=store.getUserId(handle,i);
+            // Ids are sorted, so a repeated participant follows its first occurrence.
+            if(i==0||index!=store.getUserId(handle,i-1)){
+                long bit=1L<<index;
+                if(added){
+                    occupancy[index]|=mask;
+                    userEvents.writable(index).add(handle,key);
+                    for (int slot=key;slot<key+endTime-startTime;slot++){
+                        BUSY_WORD.getAndBitwiseOr(busyUsers[slot],index>>>6,bit);
+                    }
+                }
+                else{
+                    occupancy[index]&=~mask;
+                    userEvents.writable(index).remove(handle,key);
+                    for (int slot=key;slot<key+endTime-startTime;slot++){
+                        BUSY_WORD.getAndBitwiseAnd(busyUsers[slot],index>>>6,~bit);
+                    }
+                }
+            }
         }
-        // Creates a new Event object and inserts it at the first available position (size)
-        // Then increments size
-        events[size++]=new Event(event, day, startTime,endTime,eventUsers);
     }
 
     /**
@@ -137,62 +704,33 @@ public class Calendar {
 
     /**
      * Checks if an event with the specified name exists within the stored collection of events.
-     * This method performs a linear search (sequential search) up to 'size' elements.
+     * This method looks the name up in the event index instead of searching the store.
      * @param name The name (String) of the event to search for.
      * @return true if an event with the matching name is found; false otherwise.
      * @pre name != null
      */
     public boolean doesEventExist(String name){
-        boolean result=false;
-        int i=0;
-        while (i<size&&!result) {
-            if(name.equals(events[i].getName())){
-                result=true;
-            }
-            i++;
-        }
-        return result;
-    }
-
-    /**
-     * Auxiliary method (private selector) to determine if two time intervals overlap.
-     * The method checks for temporal conflict between an existing slot [sT1, eT1)
-     * and a proposed slot [sT2, eT2).
-     * @param sT1 Start time of the first interval (Existing Event Start Time).
-     * @param eT1 End time of the first interval (Existing Event End Time).
-     * @param sT2 Start time of the second interval (Proposed Slot Start Time).
-     * @param eT2 End time of the second interval (Proposed Slot End Time).
-     * @return true if the intervals overlap, false otherwise.
-     * @pre sT1 < eT1 && sT2 < eT2 (Time intervals must be valid).
-     */
-    private boolean isWithinTime(int sT1,int eT1, int sT2,int eT2){
-        return (sT1<=sT2&&eT1>sT2||sT1<eT2&&eT1>=eT2||sT1>sT2&&eT1<eT2);
+        return searchIndex(name)!=NOT_FOUND;
     }
 
     /**
      * Checks if a specific user is currently participating in the given event.
-     * This method performs a linear search over the event's participant list,
-     * using methods provided by the Event object (getNumUsers and getUser).
+     * The name is resolved to its id once, and the id is then searched
+     * in the event's sorted participant ids (Event.hasUser).
      * @param event The Event object whose participants are to be checked.
      * @param user The username (String) to search for in the event's participants.
      * @return true if the user is found in the event's participant list; false otherwise.
      * @pre event != null && user != null
      */
     public boolean isUserInEvent(Event event, String user){
-        boolean result=false;
-        int i=0;
-        while (i<event.getNumUsers()&&!result) {
-            if(user.equals(event.getUser(i))){
-                result=true;
-            }
-            i++;
-        }
-        return result;
+        int id=searchUserIndex(user);
+        return id!=NOT_FOUND&&event.hasUser(id);
     }
 
     /**
      * Checks if a specific user is occupied (has an event scheduled) during a given time slot.
-     * This method performs a linear search across all registered events.
+     * This method intersects the slot with the weekly occupancy word of the user,
+     * so it does not depend on the number of events.
      * @param day The day of the week (integer, typically 1 to 5).
      * @param startTime The proposed start time (integer, typically 8 to 19).
      * @param endTime The proposed end time (integer, typically 9 to 20).
@@ -203,22 +741,100 @@ public class Calendar {
      * && startTime < endTime && user != null
      */
     public boolean isUserOccupied(int day, int startTime, int endTime,String user){
-        boolean result=false;
+        int index=searchUserIndex(user);
+        return index!=NOT_FOUND&&(occupancy[index]&timeMask(day,startTime,endTime))!=0;
+    }
+
+    /**
+     * Lists the users that have no event during a time slot.
+     * The busy bitsets of the hours of the slot are OR-ed word by word, and the
+     * users whose bit is still clear are free; the cost depends on the number of
+     * users divided by 64 and on the length of the slot, not on the number of events.
+     * @param day The day of the week (integer, 1 to 5).
+     * @param startTime The start time of the slot (integer, 8 to 19).
+     * @param endTime The end time of the slot (integer, 9 to 20).
+     * @return The names of the free users, in registration order.
+     * @pre day >= 1 && day <= 5 && startTime >= 8 && endTime <= 20 && startTime < endTime
+     */
+    public String[] findFreeUsers(int day,int startTime,int endTime){
+        int first=slotIndex(day,startTime);
+        int numUsers=users.size();
+        long[] busy=new long[bitsetLength(numUsers)];
+        int numFree=numUsers;
+        for (int w=0;w<busy.length;w++){
+            for (int slot=first;slot<first+endTime-startTime;slot++){
+                busy[w]|=busyUsers[slot][w];
+            }
+            numFree-=Long.bitCount(busy[w]);
+        }
+        String[] free=new String[numFree];
         int i=0;
-        while (i<size&&!result) {
-            if(events[i].getDay()==day&&isWithinTime(events[i].getStartTime(),
-                    events[i].getEndTime(),startTime,endTime)&&isUserInEvent(events[i],user)){
-                result=true;
+        for (int id=0;id<numUsers;id++){
+            if((busy[id>>>6]&(1L<<id))==0){
+                free[i++]=users.getName(id);
+            }
+        }
+        return free;
+    }
+
+    /**
+     * Finds the earliest window, at or after a given weekly slot, in which all the given
+     * users are free for a given number of consecutive hours of the same day.
+     * The occupancy words of the users are OR-ed once, and each candidate window is then
+     * tested with a single AND, so the cost is O(users + 60) and no event is visited.
+     * Calling it again from the returned slot plus one lists every window in order.
+     * @param duration The number of hours of the window.
+     * @param eventUsers The names of the users.
+     * @param from The first weekly slot to consider (0 for the start of the week).
+     * @return The weekly slot where the window starts (see slotDay and slotHour),
+     * or NOT_FOUND if there is no such window (or the duration does not fit in a day).
+     * @pre doesAllUserExist(eventUsers) && from >= 0
+     */
+    public int findFreeSlot(int duration,String[] eventUsers,int from){
+        long busy=0;
+        for (int i=0;i<eventUsers.length;i++){
+            busy|=occupancy[searchUserIndex(eventUsers[i])];
+        }
+        int result=NOT_FOUND;
+        if(duration>=1&&duration<=HOURS_PER_DAY){
+            int slot=from;
+            while (slot<DAYS*HOURS_PER_DAY&&result==NOT_FOUND) {
+                int hour=slotHour(slot);
+                if(hour+duration<=FIRST_HOUR+HOURS_PER_DAY
+                        &&(busy&timeMask(slotDay(slot),hour,hour+duration))==0){
+                    result=slot;
+                }
+                slot++;
             }
-            i++;
         }
         return result;
     }
 
+    /**
+     * Returns the day of a weekly slot.
+     * @param slot The slot number (0 to 59).
+     * @return The day of the week (1 to 5).
+     * @pre slot >= 0 && slot < 60
+     */
+    public static int slotDay(int slot){
+        return slot/HOURS_PER_DAY+1;
+    }
+
+    /**
+     * Returns the starting hour of a weekly slot.
+     * @param slot The slot number (0 to 59).
+     * @return The hour (8 to 19).
+     * @pre slot >= 0 && slot < 60
+     */
+    public static int slotHour(int slot){
+        return slot%HOURS_PER_DAY+FIRST_HOUR;
+    }
+
     /**
      * Checks if any of the specified users (starting from index 1) are occupied
-     * during the proposed time slot. This method implements a linear search
-     * to detect the first conflict among the potential participants (guests).
+     * during the proposed time slot. The slot mask is built once and intersected
+     * with the occupancy word of each potential participant (guest)
+     * until the first conflict is found.
      * @param day The day of the week (integer, 1 to 5).
      * @param startTime The proposed start time (integer, 8 to 19).
      * @param endTime The proposed end time (integer, 9 to 20).
@@ -230,10 +846,12 @@ public class Calendar {
      * @pre eventUsers != null
      */
     public boolean areAllUserOccupied(int day, int startTime, int endTime,String[] eventUsers){
+        long mask=timeMask(day,startTime,endTime);
         boolean result=false;
         int i=1;
         while (i<eventUsers.length&&!result) {
-            if(isUserOccupied(day, startTime,endTime,eventUsers[i])){
+            int index=searchUserIndex(eventUsers[i]);
+            if(index!=NOT_FOUND&&(occupancy[index]&mask)!=0){
                 result=true;
             }
             i++;
@@ -247,17 +865,15 @@ public class Calendar {
      * @param user The name of the user whose calendar is being inspected.
      * @return true if the event exists and the user is a participant, false otherwise.
      * @pre event != null && user != null
-     * @pre The event must exist in the system (i.e., doesEventExist(event) is true).
      */
     public boolean isEventInUserCalendar(String event, String user) {
         boolean result = false;
-        // Finds the internal storage index of the event.
-        Event eventMatched = events[searchIndex(event)];
+        // Finds the handle of the event in the store.
+        int handle = searchIndex(event);
 
-        // Secondary check ensuring the retrieved event matches the name
-        // (necessary if searchIndex returns 0 when not found).
-        if (event.equals(eventMatched.getName())) {
-            if (isUserInEvent(eventMatched, user)) {
+        if (handle != NOT_FOUND) {
+            int id = searchUserIndex(user);
+            if (id != NOT_FOUND && store.hasUser(handle, id)) {
                 result = true;
             }
         }
@@ -266,21 +882,18 @@ public class Calendar {
 
     /**
      * Checks if a given user is the creator (proponent) of a specific event.
-     * The proponent is defined as the user at the specified participant index
-     * (conventionally index 0).
+     * The proponent is the first user of the schedule command, whose id
+     * is kept by the store apart from the sorted participant ids.
      * @param event The name of the event.
      * @param user The name of the user to check.
-     * @param num The index position of the proponent (expected to be 0).
      * @return true if the user matches the proponent of the event, false otherwise.
      * @pre event != null && user != null
-     * @pre The event must exist in the system (i.e., doesEventExist(event) is true).
-     * @pre num is a valid index for the user array of the event (typically num=0).
      */
-    public boolean didUserCreateEvent(String event,String user,int num){
+    public boolean didUserCreateEvent(String event,String user){
         boolean result=false;
-        Event eventMatched=events[searchIndex(event)];
-        if(event.equals(eventMatched.getName())){
-            if(user.equals(eventMatched.getUser(num))){
+        int handle=searchIndex(event);
+        if(handle!=NOT_FOUND){
+            if(searchUserIndex(user)==store.getProposer(handle)){
                 result=true;
             }
         }
@@ -288,158 +901,377 @@ public class Calendar {
     }
 
     /**
-     * Searches for the array index corresponding to an event with the given name.
+     * Searches for the store handle corresponding to an event with the given name.
      * This is a private auxiliary method, typically used internally by a system
      * or collection class.
-     * It performs a Linear Search up to 'size' elements.
+     * It looks the name up in the event index, so it does not depend on the number of events.
      * @param event The name (String) of the event to search for.
-     * @return The index (int) where the event is located.
-     * If the event is not found, the function returns 0 (based on the initial
-     * assignment of 'num', potentially conflicting with the standard NOT_FOUND = -1).
+     * @return The handle (int) of the event, or NOT_FOUND
+     * if there is no event with that name.
      * @pre event != null
      */
     private int searchIndex(String event){
-        boolean result=false;
-        int i=0;
-        int num=0;
-        while (i<size&&!result) {
-            if(event.equals(events[i].getName())){
-                result=true;
-                num=i;
-            }
-            i++;
+        return eventIndex.get(event);
+    }
+
+    /**
+     * Auxiliary method (package selector, used by ConcurrentCalendar) that returns
+     * the weekly occupancy word of a user.
+     * @param id The id of the user.
+     * @return The occupancy word (bit slotIndex(day, hour) set when that hour is taken).
+     * @pre id is the id of a registered user
+     */
+    long getOccupancy(int id){
+        return occupancy[id];
+    }
+
+    /**
+     * Auxiliary method (package selector, used by ConcurrentCalendar) that returns
+     * the ids of the participants of an event.
+     * @param event The name of the event.
+     * @return The ids of the participants in ascending order (not to be modified),
+     * or null if there is no event with that name.
+     * @pre event != null
+     */
+    int[] getParticipantIds(String event){
+        int handle=searchIndex(event);
+        if(handle==NOT_FOUND){
+            return null;
+        }
+        int[] ids=new int[store.getNumUsers(handle)];
+        for (int i=0;i<ids.length;i++){
+            ids[i]=store.getUserId(handle,i);
         }
-        return num;
+        return ids;
     }
 
     /**
-     * Removes an event from the collection using the array shift/swap technique
-     * (the element at the found index is replaced by the last element in the collection).
+     * Auxiliary method (package selector, used by ConcurrentCalendar) that returns
+     * the occupancy mask of the hours of an event.
+     * @param event The name of the event.
+     * @return The mask with the bits of the hours of the event set.
+     * @pre doesEventExist(event)
+     */
+    long getEventMask(String event){
+        int handle=searchIndex(event);
+        return timeMask(store.getDay(handle),store.getStartTime(handle),store.getEndTime(handle));
+    }
+
+    /**
+     * Removes an event from the collection.
      * This method is a mutator, reducing the size of the event collection.
+     * The event is removed from every index and from the store, and the store
+     * is compacted to half its capacity when it becomes mostly empty.
      * @param event The name of the event to be cancelled.
      * @pre The event must exist in the collection
      * (checked by the caller before invoking this method).
      */
     public void cancelEvent(String event){
-        // Replace the event to be cancelled with the last element of the array
-        events[searchIndex(event)]=events[size-1];
-        // Decrement the size counter, effectively removing the event
-        size--;
+        int handle=removeEvent(event);
+        // Frees the hours of the event in the week of every participant
+        // and removes it from their event lists.
+        updateParticipants(handle,false);
+        shrink();
+    }
+
+    /**
+     * Auxiliary method (package mutator, also used by ConcurrentCalendar) that removes
+     * an event from the structures shared by all events (the name index, its slot, its
+     * participant count list and the store), but not yet from its participants
+     * (see updateParticipants). The fields of the event stay readable through its
+     * handle until the next compaction.
+     * @param event The name of the event to be cancelled.
+     * @return The handle of the removed event.
+     * @pre doesEventExist(event)
+     */
+    int removeEvent(String event){
+        version++;
+        int handle=searchIndex(event);
+        int key=slotIndex(store.getDay(handle),store.getStartTime(handle));
+        timeSlots[key].remove(handle,key);
+        removeByNumUsers(handle,key);
+        eventIndex.remove(event);
+        store.remove(handle);
+        return handle;
+    }
+
+    /**
+     * Auxiliary method (package selector, used by ConcurrentCalendar) that checks if
+     * cancellations left the event store three quarters empty (see shrink).
+     * @return true if the store should be halved, false otherwise.
+     */
+    boolean isSparse(){
+        return store.getCapacity()>MIN_EVENTS&&store.getNumEvents()<store.getCapacity()/4;
+    }
+
+    /**
+     * Auxiliary method (package mutator, also used by ConcurrentCalendar) that halves
+     * the event store if it is sparse, which still leaves room for the same number of
+     * additions before growing. Compaction renumbers the handles, so no handle may be
+     * held across this call.
+     */
+    void shrink(){
+        if(isSparse()){
+            compact(store.getCapacity()/2);
+        }
     }
 
     /**
      * Checks if the specified user is participating in any event within the current collection.
-     * This method performs a linear search (sequential search) through all registered events.
+     * This method only checks whether the user's event list is empty.
      * @param user The username (String) to check for event participation.
      * @return true if the user is found in the participant list of at least one event;
      * false otherwise.
      * @pre user != null.
+     * @pre doesUserExist(user)
      */
     public boolean doesUserHaveEvents(String user){
-        boolean result=false;
-        int i=0;
-        while (i<size&&!result) {
-            if(isUserInEvent(events[i],user)){
-                result=true;
-            }
-            i++;
-        }
-        return result;
+        return !userEvents.get(searchUserIndex(user)).isEmpty();
     }
 
     /**
      * Returns the total number of events currently registered in the system.
-     * This corresponds to the number of valid elements ('size') in the internal events array.
-     * @return The number of events (size).
+     * This corresponds to the number of events in the store that were not removed.
+     * @return The number of events.
      */
     public int getEventNumber(){
-        return size;
+        return store.getNumEvents();
+    }
+
+    /**
+     * Finds the largest number of participants associated with any event registered in the system.
+     * This is used by the 'top' command to identify events with the maximum number of users.
+     * The value is kept up to date by addEvent and cancelEvent, so no traversal is needed.
+     * @return The maximum number of participants found across all events (0 if there are none).
+     */
+    public int findMaxNumberOfUsers(){
+        return maxNumUsers;
     }
 
     /**
-     * Auxiliary method (private selector) to compare two events chronologically.
-     * The sorting criteria is based on: 1) Day (ascending), and 2) Start Time (ascending).
-     * This logic defines the chronological order required for output.
-     * @param event1 The first event to compare.
-     * @param event2 The second event to compare.
-     * @return true if event1 is scheduled chronologically earlier than event2, false otherwise.
-     * @pre event1 != null && event2 != null
+     * Provides an iterator over the events with a given number of participants,
+     * in chronological order (by day, then by start time).
+     * @param num The number of participants.
+     * @return A new EventIterator over those events (empty if there are none).
+     * @pre num >= 0
      */
-    private boolean isTheFirstEventEarlierThanTheSecond(Event event1,Event event2){
-        return(event1.getDay()<event2.getDay()||event1.getDay()==event2.getDay()&&
-                event1.getStartTime()<event2.getStartTime());
+    public EventIterator iterator(int num){
+        EventList[] lists=new EventList[0];
+        if(num<byNumUsers.length&&byNumUsers[num]!=null){
+            lists=byNumUsers[num];
+        }
+        return new EventIterator(store,lists);
     }
 
     /**
-     * Auxiliary method (private selector) used by the Selection Sort algorithm.
-     * Finds the index of the chronologically earliest event (minimum)
-     * within a specified unsorted range [index, size).
-     * @param index The starting index of the sub-array to search (inclusive).
-     * @param size The exclusive upper bound of the search range (the end of the valid elements).
-     * @return The index of the earliest event found in the range.
-     * @pre 0 <= index < size
+     * Provides an iterator over the (at most) n events with the most participants.
+     * Events are visited by decreasing number of participants and, for the
+     * same number, in chronological order. Only the lists needed to reach n
+     * events are visited, so the cost depends on n and not on the number of events.
+     * @param n The maximum number of events to visit.
+     * @return A new EventIterator over those events.
+     * @pre n >= 0
      */
-    private int findEarliestEventIndex(int index,int size){
-        int minIndex=index;
-        // Search the unsorted sub-array
-        for (int i=index+1; i < size; i++){
-            if (isTheFirstEventEarlierThanTheSecond(events[i],events[minIndex])){
-                minIndex = i;
+    public EventIterator topK(int n){
+        // Counts the counts with events needed to reach n events, from the largest count down.
+        int numCounts=0;
+        int found=0;
+        for (int num=maxNumUsers;num>0&&found<n;num--){
+            if(numEventsByNumUsers[num]>0){
+                numCounts++;
+                found+=numEventsByNumUsers[num];
+            }
+        }
+        // Visits the slot lists of each of those counts in slot order.
+        EventList[] lists=new EventList[numCounts*DAYS*HOURS_PER_DAY];
+        int i=0;
+        for (int num=maxNumUsers;i<lists.length;num--){
+            if(numEventsByNumUsers[num]>0){
+                System.arraycopy(byNumUsers[num],0,lists,i,byNumUsers[num].length);
+                i+=byNumUsers[num].length;
             }
         }
-        return minIndex;
+        return new EventIterator(store,lists,n);
     }
 
     /**
-     * Auxiliary method (private mutator) to swap two event objects in the internal events array.
-     * @param index1 The index of the first event.
-     * @param index2 The index of the second event.
-     * @pre index1 >= 0 && index1 < this.size && index2 >= 0 && index2 < this.size
+     * Provides an iterator object allowing sequential access (traversal)
+     * to the collection of events without exposing the internal storage structure,
+     * following the Iterator Pattern.
+     * Events are visited in chronological order (by day, then by start time;
+     * events of the same slot in the order they were added) with no sorting,
+     * because the iterator walks the time slot lists in slot order.
+     * @return A new instance of EventIterator, initialized to traverse the stored events.
+     * @pre true (Always runnable).
      */
-    private void swap(int index1, int index2) {
-        Event tmp = events[index1];
-        events[index1] =events[index2];
-        events[index2] = tmp;
+    public EventIterator iterator(){
+        // Creates a new iterator over the time slot lists.
+        return new EventIterator(store,timeSlots);
+    }
+
+    /**
+     * Provides an iterator over the events of a single user, in chronological order
+     * (by day, then by start time). The events come from the user's own event list,
+     * so the traversal costs only as much as the number of events of the user.
+     * @param user The name of the user.
+     * @return A new EventIterator over the events in which the user participates.
+     * @pre doesUserExist(user)
+     */
+    public EventIterator userIterator(String user){
+        return new EventIterator(store,new EventList[]{userEvents.get(searchUserIndex(user))});
     }
 
     /**
-     * Sorts the collection of events chronologically (by day, then by start time)
-     * using the **Selection Sort** algorithm.
-     * This sorting is necessary to fulfill the ordering requirement
-     * for the 'show' and 'top' commands.
+     * Writes the complete state of the calendar in a compact binary format, which
+     * load reads back. The format is:
+     * the names of the users in id order (a string table: events refer to users
+     * by their position in it); the occupancy word of every user and the busy
+     * bitsets of every weekly slot; and the events in chronological order, each one
+     * packed as its name, its slot and duration (one byte each), the id of its
+     * proponent and the ids of its participants.
+     * @param out The destination of the state.
+     * @throws IOException If the state cannot be written.
+     * @pre out != null
      */
-    public void eventSort(){
-        // The outer loop iterates size-1 times, gradually expanding the sorted portion.
-        for (int i=0;i<size-1;i++){
-            // Find the minimum element's index in the unsorted remainder.
-            // Swap the minimum element with the current starting position of the unsorted portion.
-            swap(i,findEarliestEventIndex(i,size));
+    public void save(DataOutput out) throws IOException{
+        int numUsers=users.size();
+        out.writeInt(SAVE_FORMAT);
+        out.writeInt(numUsers);
+        for (int id=0;id<numUsers;id++){
+            out.writeUTF(users.getName(id));
+        }
+        for (int id=0;id<numUsers;id++){
+            out.writeLong(occupancy[id]);
+        }
+        for (int slot=0;slot<busyUsers.length;slot++){
+            for (int i=0;i<bitsetLength(numUsers);i++){
+                out.writeLong(busyUsers[slot][i]);
+            }
+        }
+        out.writeInt(store.getNumEvents());
+        // The slot lists, visited in slot order, hold every event in chronological order.
+        for (int key=0;key<timeSlots.length;key++){
+            for (int i=0;i<timeSlots[key].size();i++){
+                int handle=timeSlots[key].get(i);
+                out.writeUTF(store.getName(handle));
+                out.writeByte(key);
+                out.writeByte(store.getEndTime(handle)-store.getStartTime(handle));
+                out.writeInt(store.getProposer(handle));
+                out.writeInt(store.getNumUsers(handle));
+                for (int j=0;j<store.getNumUsers(handle);j++){
+                    out.writeInt(store.getUserId(handle,j));
+                }
+            }
         }
     }
 
     /**
-     * Finds the largest number of participants associated with any event registered in the system.
-     * This is used by the 'top' command to identify events with the maximum number of users.
-     * @return The maximum number of participants found across all events.
+     * Reads a calendar written by save. No name is looked up and nothing is sorted:
+     * the users keep their ids, the occupancy words and busy bitsets are read as they
+     * were saved, and the events, being in chronological order, are appended at the
+     * end of their lists and receive consecutive handles. The result is the same
+     * calendar that was saved, whose queries produce the same output.
+     * @param in The source of the state.
+     * @return The calendar read.
+     * @throws IOException If the state cannot be read or was not written by save.
+     * @pre in != null
      */
-    public int findMaxNumberOfUsers(){
-        int num=0;
-        // Linear traversal to find the maximum value
-        for (int i=0;i<size;i++){
-            num=Math.max(num,events[i].getNumUsers());
+    public static Calendar load(DataInput in) throws IOException{
+        if(in.readInt()!=SAVE_FORMAT){
+            throw new IOException("Not a saved calendar");
+        }
+        Calendar calendar=new Calendar();
+        int numUsers=in.readInt();
+        calendar.ensureUserCapacity(numUsers);
+        for (int id=0;id<numUsers;id++){
+            calendar.users.register(in.readUTF());
+            calendar.userEvents.set(id,new EventList());
+        }
+        for (int id=0;id<numUsers;id++){
+            calendar.occupancy[id]=in.readLong();
+        }
+        for (int slot=0;slot<calendar.busyUsers.length;slot++){
+            for (int i=0;i<bitsetLength(numUsers);i++){
+                calendar.busyUsers[slot][i]=in.readLong();
+            }
+        }
+        int numEvents=in.readInt();
+        calendar.ensureCapacity(numEvents);
+        for (int i=0;i<numEvents;i++){
+            String name=in.readUTF();
+            int key=in.readUnsignedByte();
+            int duration=in.readUnsignedByte();
+            int proposer=in.readInt();
+            int[] ids=new int[in.readInt()];
+            for (int j=0;j<ids.length;j++){
+                ids[j]=in.readInt();
+            }
+            int startTime=slotHour(key);
+            int handle=calendar.store.add(name,slotDay(key),startTime,startTime+duration,proposer,ids);
+            calendar.eventIndex.put(name,handle);
+            calendar.timeSlots[key].add(handle,key);
+            calendar.addByNumUsers(handle,key);
+            for (int j=0;j<ids.length;j++){
+                // Ids are sorted, so a repeated participant follows its first occurrence.
+                if(j==0||ids[j]!=ids[j-1]){
+                    calendar.userEvents.get(ids[j]).add(handle,key);
+                }
+            }
         }
-        return num;
+        return calendar;
     }
 
     /**
-     * Provides an iterator object allowing sequential access (traversal)
-     * to the collection of events without exposing the internal array structure,
-     * following the Iterator Pattern.
-     * @return A new instance of EventIterator, initialized to traverse the stored events.
-     * @pre true (Always runnable).
+     * Returns the version of the calendar, which changes every time a user or event is
+     * added or an event is cancelled (and only then). Comparing the versions before and
+     * after a command tells whether the command changed the calendar.
+     * @return The number of changes made so far.
      */
-    public EventIterator iterator(){
-        // Creates a new iterator, providing it with the underlying array and the size.
-        return new EventIterator(events, size);
+    public long getVersion(){
+        return version;
+    }
+
+    /**
+     * Returns an immutable view of the current state for the 'show' query,
+     * which later changes to the calendar do not affect.
+     * The snapshot holds a view of the user directory (which is only appended to, see
+     * UserDirectory.view) and a frozen copy of the table of the event lists of the users
+     * (see EventListTable.freeze). What it shares with the calendar is copied the
+     * next time it has to change (copy-on-write), and only then.
+     * The lists of the events with the most participants are left out, so the events
+     * scheduled after it are not made to copy them (see topSnapshot).
+     * Taking a snapshot costs O(1), whatever the number of users and events;
+     * it is reused until the calendar changes.
+     * @return The snapshot of the current state.
+     */
+    public CalendarSnapshot snapshot(){
+        if(snapshot==null||snapshot.getVersion()!=version){
+            snapshot=new CalendarSnapshot(version,users.view(),store.view(),userEvents.freeze(),maxNumUsers,null);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns an immutable view of the current state for the 'show' and 'top' queries.
+     * In addition to what snapshot() holds, it holds the slot lists of the events with
+     * the most participants, which are marked as shared, so the next change to each of
+     * them copies it. Only 'top' needs them, so only 'top' pays for them.
+     * Taking a snapshot costs O(1), whatever the number of users and events;
+     * it is reused until the calendar changes.
+     * @return The snapshot of the current state, with its events with the most participants.
+     */
+    public CalendarSnapshot topSnapshot(){
+        if(snapshot==null||snapshot.getVersion()!=version||!snapshot.hasTopEvents()){
+            EventList[] top=new EventList[0];
+            if(maxNumUsers>0){
+                // The array of the count changes as its lists are copied, so the snapshot keeps its own.
+                top=byNumUsers[maxNumUsers].clone();
+                for (EventList list : top){
+                    list.share();
+                }
+            }
+            snapshot=new CalendarSnapshot(version,users.view(),store.view(),userEvents.freeze(),maxNumUsers,top);
+        }
+        return snapshot;
     }
 }
\ No newline at end of file
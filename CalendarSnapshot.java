@@ -0,0 +1,117 @@
+/**
+ * An immutable view of a Calendar at a given version, for the 'show' and 'top'
+ * queries. Once taken, it keeps answering for that version while the calendar
+ * goes on changing, so readers never see a change half applied and never have
+ * to stop the writer.
+ * It refers to the structures of the calendar instead of copying them:
+ * the table of the event lists of the users is frozen (see EventListTable.freeze) and,
+ * in a snapshot for 'top', the lists of the events with the most participants are
+ * marked as shared, and the calendar copies what they share before changing it; the
+ * user directory and the event store are seen through views of their arrays, which are
+ * only appended to or replaced (see UserDirectory.view and EventStore.view).
+ * Snapshots are created by Calendar.snapshot() and, for 'top', by Calendar.topSnapshot().
+ */
+public class CalendarSnapshot implements CalendarView {
+
+    private final long version;          // Version of the calendar the snapshot was taken at
+    private final UserDirectory users;   // View of the registered users
+    private final EventStore store;      // View of the stored events
+    private final EventListTable userEvents; // Chronological events of each user (frozen table)
+    private final int maxNumUsers;       // Largest number of participants of an event
+    private final EventList[] topEvents; // Events with maxNumUsers participants, by weekly slot (shared lists, or null)
+
+    /**
+     * Constructor: Initializes a snapshot over structures that will not change any more.
+     * @param version The version of the calendar.
+     * @param users A view of the user directory.
+     * @param store A view of the event store.
+     * @param userEvents The event list of each user (by id), in a frozen table.
+     * @param maxNumUsers The largest number of participants of an event (0 if none).
+     * @param topEvents The events with that number of participants, one list per weekly
+     * slot in slot order, all marked as shared (null if the snapshot is not for 'top').
+     * @pre userEvents has a list for every user of the directory
+     */
+    public CalendarSnapshot(long version, UserDirectory users, EventStore store,
+            EventListTable userEvents, int maxNumUsers, EventList[] topEvents) {
+        this.version = version;
+        this.users = users;
+        this.store = store;
+        this.userEvents = userEvents;
+        this.maxNumUsers = maxNumUsers;
+        this.topEvents = topEvents;
+    }
+
+    /**
+     * Returns the version of the calendar the snapshot was taken at.
+     * @return The number of changes the calendar had received.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Checks if a user was registered when the snapshot was taken.
+     * @param user The name of the user.
+     * @return true if the user is registered, false otherwise.
+     * @pre user != null
+     */
+    public boolean doesUserExist(String user) {
+        return users.getId(user) != UserDirectory.NOT_FOUND;
+    }
+
+    /**
+     * Checks if a user participated in at least one event when the snapshot was taken.
+     * @param user The name of the user.
+     * @return true if the user has events, false otherwise.
+     * @pre doesUserExist(user)
+     */
+    public boolean doesUserHaveEvents(String user) {
+        return !userEvents.get(users.getId(user)).isEmpty();
+    }
+
+    /**
+     * Provides an iterator over the events of a user, in chronological order.
+     * @param user The name of the user.
+     * @return A new EventIterator over the events in which the user participates.
+     * @pre doesUserExist(user)
+     */
+    public EventIterator userIterator(String user) {
+        return new EventIterator(store, new EventList[] {userEvents.get(users.getId(user))});
+    }
+
+    /**
+     * Returns the number of events when the snapshot was taken.
+     * @return The number of events.
+     */
+    public int getEventNumber() {
+        return store.getNumEvents();
+    }
+
+    /**
+     * Returns the largest number of participants of an event when the snapshot was taken.
+     * @return The largest number of participants (0 if there were no events).
+     */
+    public int findMaxNumberOfUsers() {
+        return maxNumUsers;
+    }
+
+    /**
+     * Checks if the snapshot keeps the events with the most participants,
+     * which only a snapshot taken for 'top' does.
+     * @return true if iterator(findMaxNumberOfUsers()) can be called, false otherwise.
+     */
+    public boolean hasTopEvents() {
+        return topEvents != null;
+    }
+
+    /**
+     * Provides an iterator over the events with the most participants, in
+     * chronological order. Only that number of participants is kept by the snapshot.
+     * @param num The number of participants.
+     * @return A new EventIterator over those events.
+     * @pre hasTopEvents() && num == findMaxNumberOfUsers()
+     */
+    public EventIterator iterator(int num) {
+        return new EventIterator(store, topEvents);
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * The queries used to display the events of a calendar ('show' and 'top').
+ * They are answered both by the Calendar itself, which reflects every change
+ * as soon as it is made, and by a CalendarSnapshot, which keeps answering for
+ * the state in which it was taken.
+ */
+public interface CalendarView {
+
+    /**
+     * Checks if a user is registered.
+     * @param user The name of the user.
+     * @return true if the user is registered, false otherwise.
+     * @pre user != null
+     */
+    boolean doesUserExist(String user);
+
+    /**
+     * Checks if a user participates in at least one event.
+     * @param user The name of the user.
+     * @return true if the user has events, false otherwise.
+     * @pre doesUserExist(user)
+     */
+    boolean doesUserHaveEvents(String user);
+
+    /**
+     * Provides an iterator over the events of a user, in chronological order.
+     * @param user The name of the user.
+     * @return A new EventIterator over the events in which the user participates.
+     * @pre doesUserExist(user)
+     */
+    EventIterator userIterator(String user);
+
+    /**
+     * Returns the number of events.
+     * @return The number of events.
+     */
+    int getEventNumber();
+
+    /**
+     * Returns the largest number of participants of an event.
+     * @return The largest number of participants (0 if there are no events).
+     */
+    int findMaxNumberOfUsers();
+
+    /**
+     * Provides an iterator over the events with a given number of participants,
+     * in chronological order.
+     * @param num The number of participants.
+     * @return A new EventIterator over those events.
+     * @pre num == findMaxNumberOfUsers()
+     */
+    EventIterator iterator(int num);
+}
@@ -0,0 +1,74 @@
+/**
+ * A command read from the input, with its arguments already parsed.
+ * Commands are read by one stage of the interpreter and carried out by another,
+ * so the whole command is kept: its name, its text arguments (user and event names)
+ * and its numeric arguments (days, hours and durations), in the order they were read.
+ */
+public class Command {
+
+    private String name;     // The command word (for example "schedule")
+    private String[] words;  // The text arguments, in input order
+    private int[] numbers;   // The numeric arguments, in input order
+
+    /**
+     * Constructor: Initializes a command with its arguments.
+     * @param name The command word.
+     * @param words The text arguments, in input order.
+     * @param numbers The numeric arguments, in input order.
+     * @pre name != null && words != null && numbers != null
+     */
+    public Command(String name, String[] words, int[] numbers) {
+        this.name = name;
+        this.words = words;
+        this.numbers = numbers;
+    }
+
+    /**
+     * Returns the command word.
+     * @return The name of the command.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns a text argument of the command.
+     * @param num The position of the argument among the text arguments.
+     * @return The argument.
+     * @pre num >= 0 && num < getNumWords()
+     */
+    public String getWord(int num) {
+        return words[num];
+    }
+
+    /**
+     * Returns the number of text arguments of the command.
+     * @return The number of text arguments.
+     */
+    public int getNumWords() {
+        return words.length;
+    }
+
+    /**
+     * Returns the text arguments of the command from a given position on
+     * (for example the participants of a 'schedule', after the event name).
+     * @param from The position of the first argument to return.
+     * @return A new array with the arguments from that position, in input order.
+     * @pre from >= 0 && from <= getNumWords()
+     */
+    public String[] getWords(int from) {
+        String[] result = new String[words.length - from];
+        System.arraycopy(words, from, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * Returns a numeric argument of the command.
+     * @param num The position of the argument among the numeric arguments.
+     * @return The argument.
+     * @pre num >= 0 && num < number of numeric arguments
+     */
+    public int getNumber(int num) {
+        return numbers[num];
+    }
+}
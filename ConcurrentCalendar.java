@@ -0,0 +1,553 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A thread-safe front end to a Calendar, for callers that schedule and cancel
+ * events from several threads at once.
+ * Three kinds of locks protect the Calendar:
+ * - a read-write lock on the user directory: registering a user (which may enlarge
+ *   the per-user arrays) takes it exclusively, every other operation shares it;
+ * - a fixed number of user stripes: the stripe of a user (its id modulo the number of
+ *   stripes) guards its occupancy word, its event list and its bits in the busy bitsets.
+ *   Consecutive ids fall in different stripes, so users registered together, such as
+ *   the members of a team, spread over the stripes instead of waiting for the same one.
+ *   The users whose bits share a word of the bitsets are thus in different stripes, and
+ *   their bits are set and cleared atomically (see Calendar.updateParticipants); apart
+ *   from those words, operations on users of different stripes never write the same
+ *   memory and run in parallel;
+ * - a global lock on the structures shared by all events (store, name index, slot and
+ *   participant count lists), held only for the name check and the insertion or removal
+ *   of the event in those structures. The data of the participants is updated after
+ *   it is released, under their stripes only.
+ * An operation takes the stripes of all its participants in ascending stripe order,
+ * which is the same for every thread, so two operations can never wait for each other
+ * in a cycle. The global lock is always taken last, after the stripes.
+ * The results are the same as those of the single-threaded Calendar for the
+ * order in which the operations take the global lock.
+ * Growing or compacting the store renumbers the handles of the events, so it is
+ * done under the exclusive directory lock: a schedule that finds the store full
+ * releases its locks, makes room and starts over, and a cancellation that leaves
+ * the store mostly empty shrinks it the same way once its locks are released.
+ * The calendar never gives out snapshots, so none of its event lists is shared and
+ * the lists of different users are changed without touching common memory (see
+ * EventListTable).
+ *
+ * In optimistic mode (chosen at construction) the stripes are not used to check
+ * availability. The occupancy words are kept in atomic arrays, and a schedule reserves
+ * the hours of each participant with a compare-and-set, releasing the earlier
+ * reservations if one of them is already busy; conflicts are thus detected without
+ * waiting for any lock. The stripes are only taken once the hours are reserved,
+ * to add the event and update the data of its participants.
+ * Under contention, two schedules that reserve overlapping teams at the same moment
+ * may both be rejected, where the single-threaded Calendar would accept one of them.
+ */
+public class ConcurrentCalendar {
+
+    private static final int STRIPES = 64; // Number of user stripes (one bit each in a long)
+    private static final int CHUNK_BITS = 10; // Users per atomic chunk is 2^CHUNK_BITS
+    private static final int CHUNK = 1 << CHUNK_BITS;
+
+    private Calendar calendar;                    // The calendar being protected
+    private ReentrantReadWriteLock directoryLock; // Guards the registration of users
+    private ReentrantLock[] stripes;              // Guard the data of the users
+    private ReentrantLock eventsLock;             // Guards the structures shared by all events
+    private boolean optimistic;                   // true to reserve hours with compare-and-set
+    private AtomicLongArray[] occupancy;          // Optimistic mode: occupancy words, in chunks of CHUNK users
+
+    /**
+     * Constructor: Initializes an empty calendar and its locks, in locking mode.
+     */
+    public ConcurrentCalendar() {
+        this(false);
+    }
+
+    /**
+     * Constructor: Initializes an empty calendar and its locks.
+     * @param optimistic true to check availability with compare-and-set on atomic
+     * occupancy words, false to check it under the stripes of the participants.
+     */
+    public ConcurrentCalendar(boolean optimistic) {
+        this.optimistic = optimistic;
+        occupancy = new AtomicLongArray[0];
+        calendar = new Calendar();
+        directoryLock = new ReentrantReadWriteLock();
+        stripes = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        eventsLock = new ReentrantLock();
+    }
+
+    /**
+     * Registers a new user, unless a user with that name already exists.
+     * No other operation runs while the user is being registered.
+     * @param user The name of the user.
+     * @return true if the user was registered, false if the name was taken.
+     * @pre user != null
+     */
+    public boolean addUser(String user) {
+        directoryLock.writeLock().lock();
+        try {
+            if (calendar.doesUserExist(user)) {
+                return false;
+            }
+            calendar.addUser(user);
+            int id = calendar.resolveIds(new String[] {user})[0];
+            if (optimistic && id >> CHUNK_BITS == occupancy.length) {
+                // The chunks are only added here, under the exclusive lock,
+                // so the words that are already reserved never move.
+                occupancy = Arrays.copyOf(occupancy, occupancy.length + 1);
+                occupancy[occupancy.length - 1] = new AtomicLongArray(CHUNK);
+            }
+            return true;
+        } finally {
+            directoryLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Checks if a user is registered.
+     * @param user The name of the user.
+     * @return true if the user is registered, false otherwise.
+     * @pre user != null
+     */
+    public boolean doesUserExist(String user) {
+        directoryLock.readLock().lock();
+        try {
+            return calendar.doesUserExist(user);
+        } finally {
+            directoryLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks if an event with the given name exists.
+     * @param event The name of the event.
+     * @return true if the event exists, false otherwise.
+     * @pre event != null
+     */
+    public boolean doesEventExist(String event) {
+        eventsLock.lock();
+        try {
+            return calendar.doesEventExist(event);
+        } finally {
+            eventsLock.unlock();
+        }
+    }
+
+    /**
+     * Auxiliary method (package selector, used by ConcurrentCalendarCheck) that returns
+     * the calendar being protected. It must only be read once no operation is running.
+     * @return The calendar.
+     */
+    Calendar getCalendar() {
+        return calendar;
+    }
+
+    /**
+     * Returns the number of events in the calendar.
+     * @return The number of events.
+     */
+    public int getEventNumber() {
+        eventsLock.lock();
+        try {
+            return calendar.getEventNumber();
+        } finally {
+            eventsLock.unlock();
+        }
+    }
+
+    /**
+     * Checks if a user is busy at some hour of a time slot.
+     * Only the stripe of the user is locked.
+     * @param day The day of the week (1-5).
+     * @param startTime The start hour (8-19).
+     * @param endTime The end hour (9-20).
+     * @param user The name of the user.
+     * @return true if the user has an event overlapping the slot, false otherwise.
+     * @pre doesUserExist(user)
+     * @pre day >= 1 && day <= 5 && startTime >= 8 && endTime <= 20 && startTime < endTime
+     */
+    public boolean isUserOccupied(int day, int startTime, int endTime, String user) {
+        long mask = Calendar.timeMask(day, startTime, endTime);
+        directoryLock.readLock().lock();
+        try {
+            int id = calendar.resolveIds(new String[] {user})[0];
+            if (optimistic) {
+                return (occupancy[id >> CHUNK_BITS].get(id & (CHUNK - 1)) & mask) != 0;
+            }
+            ReentrantLock stripe = stripes[stripeOf(id)];
+            stripe.lock();
+            try {
+                return (calendar.getOccupancy(id) & mask) != 0;
+            } finally {
+                stripe.unlock();
+            }
+        } finally {
+            directoryLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Attempts to schedule a new event, with the same constraints and results
+     * as Calendar.trySchedule.
+     * In locking mode, the availability of the participants is checked while holding
+     * only their stripes; the global lock is then taken to check the name and insert
+     * the event, and released before the data of the participants is updated.
+     * The stripes stay locked until then, so no other operation can take the hours
+     * of the participants in between.
+     * In optimistic mode, the hours are reserved instead (see reserve), and the stripes
+     * and the global lock are only taken to insert the event.
+     * If the event store is full, every lock is released, the store is grown under the
+     * exclusive directory lock and the schedule starts over.
+     * @param event The name of the event.
+     * @param day The day of the week (1-5).
+     * @param startTime The start hour (8-19).
+     * @param endTime The end hour (9-20).
+     * @param eventUsers Array containing the names of the participants (proponent first).
+     * @return SCHEDULED if the event was added, otherwise the first constraint violated.
+     * @pre Same as Calendar.trySchedule.
+     */
+    public ScheduleResult trySchedule(String event, int day, int startTime, int endTime, String[] eventUsers) {
+        long mask = Calendar.timeMask(day, startTime, endTime);
+        ScheduleResult result = null;
+        while (result == null) {
+            directoryLock.readLock().lock();
+            try {
+                int[] ids = calendar.resolveIds(eventUsers);
+                result = optimistic ? scheduleOptimistic(event, day, startTime, endTime, mask, ids)
+                        : scheduleLocked(event, day, startTime, endTime, mask, ids);
+            } finally {
+                directoryLock.readLock().unlock();
+            }
+            if (result == null) {
+                makeRoom();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Auxiliary method (private mutator) with the locking path of trySchedule.
+     * @param event The name of the event.
+     * @param day The day of the week (1-5).
+     * @param startTime The start hour (8-19).
+     * @param endTime The end hour (9-20).
+     * @param mask The occupancy mask of the time slot.
+     * @param ids The ids of the participants (proponent first), NOT_FOUND for unknown names.
+     * @return SCHEDULED if the event was added, otherwise the first constraint violated,
+     * or null if the event store was full (nothing was changed).
+     * @pre the directory lock is held for reading
+     */
+    private ScheduleResult scheduleLocked(String event, int day, int startTime, int endTime,
+            long mask, int[] ids) {
+        if (!areRegistered(ids)) {
+            return ScheduleResult.SOME_USER_NOT_REGISTERED;
+        }
+        long held = lockStripes(ids);
+        try {
+            boolean proposerBusy = (calendar.getOccupancy(ids[0]) & mask) != 0;
+            boolean guestBusy = false;
+            for (int i = 1; i < ids.length && !guestBusy; i++) {
+                guestBusy = (calendar.getOccupancy(ids[i]) & mask) != 0;
+            }
+            int handle;
+            eventsLock.lock();
+            try {
+                if (calendar.doesEventExist(event)) {
+                    return ScheduleResult.EVENT_ALREADY_EXISTS;
+                } else if (proposerBusy) {
+                    return ScheduleResult.PROPOSER_NOT_AVAILABLE;
+                } else if (guestBusy) {
+                    return ScheduleResult.SOME_USER_NOT_AVAILABLE;
+                } else if (!calendar.hasRoom()) {
+                    return null;
+                }
+                int proposer = ids[0];
+                Arrays.sort(ids);
+                handle = calendar.insertEvent(event, day, startTime, endTime, proposer, ids);
+            } finally {
+                eventsLock.unlock();
+            }
+            calendar.updateParticipants(handle, true);
+            return ScheduleResult.SCHEDULED;
+        } finally {
+            unlockStripes(held);
+        }
+    }
+
+    /**
+     * Auxiliary method (private mutator) with the optimistic path of trySchedule.
+     * The hours are reserved for every participant first; if one of them is busy,
+     * the reservations are released and the result is that of the first busy one
+     * (the proponent or another participant), unless the name is taken.
+     * The reservations of an accepted event become the busy hours of its participants.
+     * @param event The name of the event.
+     * @param day The day of the week (1-5).
+     * @param startTime The start hour (8-19).
+     * @param endTime The end hour (9-20).
+     * @param mask The occupancy mask of the time slot.
+     * @param ids The ids of the participants (proponent first), NOT_FOUND for unknown names.
+     * @return SCHEDULED if the event was added, otherwise the first constraint violated,
+     * or null if the event store was full (nothing was changed).
+     * @pre the directory lock is held for reading
+     */
+    private ScheduleResult scheduleOptimistic(String event, int day, int startTime, int endTime,
+            long mask, int[] ids) {
+        if (!areRegistered(ids)) {
+            return ScheduleResult.SOME_USER_NOT_REGISTERED;
+        }
+        int reserved = reserve(ids, mask);
+        if (reserved < ids.length) {
+            release(ids, reserved, mask);
+            eventsLock.lock();
+            try {
+                if (calendar.doesEventExist(event)) {
+                    return ScheduleResult.EVENT_ALREADY_EXISTS;
+                }
+            } finally {
+                eventsLock.unlock();
+            }
+            return reserved == 0 ? ScheduleResult.PROPOSER_NOT_AVAILABLE
+                    : ScheduleResult.SOME_USER_NOT_AVAILABLE;
+        }
+        long held = lockStripes(ids);
+        try {
+            int handle;
+            eventsLock.lock();
+            try {
+                if (calendar.doesEventExist(event)) {
+                    release(ids, reserved, mask);
+                    return ScheduleResult.EVENT_ALREADY_EXISTS;
+                } else if (!calendar.hasRoom()) {
+                    release(ids, reserved, mask);
+                    return null;
+                }
+                int proposer = ids[0];
+                Arrays.sort(ids);
+                handle = calendar.insertEvent(event, day, startTime, endTime, proposer, ids);
+            } finally {
+                eventsLock.unlock();
+            }
+            calendar.updateParticipants(handle, true);
+            return ScheduleResult.SCHEDULED;
+        } finally {
+            unlockStripes(held);
+        }
+    }
+
+    /**
+     * Auxiliary method (private selector) that checks if every participant is registered.
+     * @param ids The ids of the participants, NOT_FOUND for unknown names.
+     * @return true if no id is NOT_FOUND, false otherwise.
+     */
+    private static boolean areRegistered(int[] ids) {
+        for (int id : ids) {
+            if (id == NameIndex.NOT_FOUND) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Auxiliary method (private mutator) that reserves the hours of a mask for a list
+     * of users, in order, with a compare-and-set on the occupancy word of each one.
+     * A user listed more than once is only reserved the first time.
+     * It stops at the first user whose word already has one of the hours.
+     * @param ids The ids of the users.
+     * @param mask The occupancy mask to reserve.
+     * @return The number of users processed before the first busy one
+     * (ids.length if all the hours were reserved).
+     * @pre optimistic, every id is the id of a registered user
+     */
+    private int reserve(int[] ids, long mask) {
+        for (int i = 0; i < ids.length; i++) {
+            if (!isRepeated(ids, i)) {
+                AtomicLongArray chunk = occupancy[ids[i] >> CHUNK_BITS];
+                int index = ids[i] & (CHUNK - 1);
+                long word;
+                do {
+                    word = chunk.get(index);
+                    if ((word & mask) != 0) {
+                        return i;
+                    }
+                } while (!chunk.compareAndSet(index, word, word | mask));
+            }
+        }
+        return ids.length;
+    }
+
+    /**
+     * Auxiliary method (private mutator) that releases the hours of a mask for the
+     * first users of a list, clearing them with a compare-and-set on each word.
+     * @param ids The ids of the users.
+     * @param count The number of users at the start of the list to release.
+     * @param mask The occupancy mask to release.
+     * @pre optimistic, the hours were reserved for those users
+     */
+    private void release(int[] ids, int count, long mask) {
+        for (int i = 0; i < count; i++) {
+            if (!isRepeated(ids, i)) {
+                AtomicLongArray chunk = occupancy[ids[i] >> CHUNK_BITS];
+                int index = ids[i] & (CHUNK - 1);
+                long word;
+                do {
+                    word = chunk.get(index);
+                } while (!chunk.compareAndSet(index, word, word & ~mask));
+            }
+        }
+    }
+
+    /**
+     * Auxiliary method (private selector) that checks if a user appears earlier in a list.
+     * Teams are small, so a linear scan is used.
+     * @param ids The ids of the users.
+     * @param i The position of the user.
+     * @return true if ids[i] is also at a position before i, false otherwise.
+     */
+    private static boolean isRepeated(int[] ids, int i) {
+        for (int j = 0; j < i; j++) {
+            if (ids[j] == ids[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cancels an event, if it exists.
+     * The participants are read under the global lock, their stripes are taken, and
+     * the event is removed only if it still has the same participants (another thread
+     * may have cancelled it, or replaced it with an event of the same name, while the
+     * stripes were being taken); otherwise it starts over. The global lock is released
+     * once the event is removed from the shared structures, and the data of the
+     * participants is then updated under their stripes. In optimistic mode, the hours
+     * of the participants are released as well.
+     * If the cancellation leaves the event store mostly empty, the store is shrunk
+     * under the exclusive directory lock, once every other lock is released.
+     * @param event The name of the event.
+     * @return true if the event was cancelled, false if there was no such event.
+     * @pre event != null
+     */
+    public boolean cancelEvent(String event) {
+        boolean sparse = false;
+        directoryLock.readLock().lock();
+        try {
+            int[] ids = null;
+            int handle = NameIndex.NOT_FOUND;
+            long mask = 0;
+            while (handle == NameIndex.NOT_FOUND) {
+                eventsLock.lock();
+                try {
+                    ids = calendar.getParticipantIds(event);
+                } finally {
+                    eventsLock.unlock();
+                }
+                if (ids == null) {
+                    return false;
+                }
+                long held = lockStripes(ids);
+                try {
+                    eventsLock.lock();
+                    try {
+                        int[] current = calendar.getParticipantIds(event);
+                        if (current == null) {
+                            return false;
+                        }
+                        if (Arrays.equals(current, ids)) {
+                            mask = calendar.getEventMask(event);
+                            handle = calendar.removeEvent(event);
+                            sparse = calendar.isSparse();
+                        }
+                    } finally {
+                        eventsLock.unlock();
+                    }
+                    if (handle != NameIndex.NOT_FOUND) {
+                        calendar.updateParticipants(handle, false);
+                    }
+                } finally {
+                    unlockStripes(held);
+                }
+            }
+            if (optimistic) {
+                release(ids, ids.length, mask);
+            }
+        } finally {
+            directoryLock.readLock().unlock();
+        }
+        if (sparse) {
+            shrink();
+        }
+        return true;
+    }
+
+    /**
+     * Auxiliary method (private mutator) that grows the event store if it is still
+     * full, under the exclusive directory lock, since growing may renumber the events.
+     */
+    private void makeRoom() {
+        directoryLock.writeLock().lock();
+        try {
+            if (!calendar.hasRoom()) {
+                calendar.grow();
+            }
+        } finally {
+            directoryLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Auxiliary method (private mutator) that halves the event store if it is still
+     * mostly empty, under the exclusive directory lock, since compacting renumbers the events.
+     */
+    private void shrink() {
+        directoryLock.writeLock().lock();
+        try {
+            calendar.shrink();
+        } finally {
+            directoryLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Auxiliary method (private selector) that returns the stripe of a user,
+     * so that consecutive ids have consecutive stripes.
+     * @param id The id of the user.
+     * @return The stripe (0 to STRIPES-1).
+     */
+    private static int stripeOf(int id) {
+        return id % STRIPES;
+    }
+
+    /**
+     * Auxiliary method (private mutator) that locks the stripes of a set of users.
+     * The stripes are collected as the bits of a long, which removes repeated stripes,
+     * and taken from the lowest bit to the highest, the order shared by every thread.
+     * @param ids The ids of the users.
+     * @return The stripes taken, one bit per stripe (to be given to unlockStripes).
+     * @pre every id is the id of a registered user
+     */
+    private long lockStripes(int[] ids) {
+        long needed = 0;
+        for (int id : ids) {
+            needed |= 1L << stripeOf(id);
+        }
+        for (long left = needed; left != 0; left &= left - 1) {
+            stripes[Long.numberOfTrailingZeros(left)].lock();
+        }
+        return needed;
+    }
+
+    /**
+     * Auxiliary method (private mutator) that unlocks the stripes taken by lockStripes.
+     * @param held The stripes taken, one bit per stripe.
+     */
+    private void unlockStripes(long held) {
+        for (long left = held; left != 0; left &= left - 1) {
+            stripes[Long.numberOfTrailingZeros(left)].unlock();
+        }
+    }
+}
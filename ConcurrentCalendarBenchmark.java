@@ -0,0 +1,128 @@
+import java.util.ArrayDeque;
+import java.util.Random;
+
+/**
+ * Measures the throughput of ConcurrentCalendar with 1 to 32 threads, in locking
+ * and in optimistic mode. Every thread schedules and cancels events among its own
+ * users, so the threads only meet on the global lock, the directory lock and the
+ * stripes, and the throughput shows how much of an operation runs outside of them.
+ * Two ways of registering the users are measured: in blocks, where the users of a
+ * thread have consecutive ids, and interleaved, where the threads take turns to
+ * register their users, so the ids of a thread are THREADS apart and its users share
+ * the words of the busy bitsets with the users of the other threads.
+ * Usage: java ConcurrentCalendarBenchmark [operations]
+ * where operations is the total number of operations of each run (4000000 by default),
+ * divided among its threads.
+ */
+public class ConcurrentCalendarBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32}; // Thread counts measured
+    private static final int USERS_PER_THREAD = 128; // Users of each thread
+    private static final int TEAM = 3;               // Participants of every event
+    private static final int KEPT = 32;              // Events a thread keeps before cancelling the oldest
+    private static final int DEFAULT_OPERATIONS = 4000000;
+    private static final int WARMUP_RUNS = 2;        // Runs discarded before measuring each mode
+
+    /**
+     * Runs the benchmark and prints one line per thread count and way of registering
+     * the users, with the operations per second of each mode.
+     * @param args Optionally, the total number of operations of each run.
+     * @throws InterruptedException If the main thread is interrupted while waiting.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_OPERATIONS;
+        System.out.printf("%d processors available%n", Runtime.getRuntime().availableProcessors());
+        System.out.printf("%8s %12s %14s %15s%n", "threads", "users", "locking op/s", "optimistic op/s");
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            run(false, false, THREADS[THREADS.length - 1], operations);
+            run(true, false, THREADS[THREADS.length - 1], operations);
+        }
+        for (int threads : THREADS) {
+            for (boolean interleaved : new boolean[] {false, true}) {
+                long locking = run(false, interleaved, threads, operations);
+                long optimistic = run(true, interleaved, threads, operations);
+                System.out.printf("%8d %12s %14d %15d%n", threads, interleaved ? "interleaved" : "blocks",
+                        locking, optimistic);
+            }
+        }
+    }
+
+    /**
+     * Auxiliary method (private) that runs the operations on a new calendar with
+     * a given number of threads and measures their throughput.
+     * @param optimistic true for optimistic mode, false for locking mode.
+     * @param interleaved true to register the users of the threads in turns,
+     * false to register the users of each thread together.
+     * @param threads The number of threads.
+     * @param operations The total number of operations, divided among the threads.
+     * @return The number of operations per second.
+     * @throws InterruptedException If the main thread is interrupted while waiting.
+     */
+    private static long run(boolean optimistic, boolean interleaved, int threads, int operations)
+            throws InterruptedException {
+        ConcurrentCalendar calendar = new ConcurrentCalendar(optimistic);
+        for (int i = 0; i < threads * USERS_PER_THREAD; i++) {
+            if (interleaved) {
+                calendar.addUser(userName(i % threads, i / threads));
+            } else {
+                calendar.addUser(userName(i / USERS_PER_THREAD, i % USERS_PER_THREAD));
+            }
+        }
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers[t] = new Thread(() -> work(calendar, thread, operations / threads));
+        }
+        long start = System.nanoTime();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        return (long) ((double) (operations / threads * threads) * 1e9 / elapsed);
+    }
+
+    /**
+     * Auxiliary method (private) with the operations of one thread: it schedules events
+     * for random teams of its users at random hours, and once it keeps KEPT events,
+     * every schedule is followed by the cancellation of its oldest event.
+     * @param calendar The calendar.
+     * @param thread The number of the thread, which selects its users.
+     * @param operations The number of operations (schedules and cancellations).
+     */
+    private static void work(ConcurrentCalendar calendar, int thread, int operations) {
+        Random random = new Random(thread);
+        ArrayDeque<String> kept = new ArrayDeque<>();
+        String[] team = new String[TEAM];
+        int done = 0;
+        int serial = 0;
+        while (done < operations) {
+            if (kept.size() >= KEPT) {
+                calendar.cancelEvent(kept.removeFirst());
+            } else {
+                for (int i = 0; i < TEAM; i++) {
+                    team[i] = userName(thread, random.nextInt(USERS_PER_THREAD));
+                }
+                int day = 1 + random.nextInt(5);
+                int startTime = 8 + random.nextInt(12);
+                String event = "t" + thread + "e" + serial++;
+                if (calendar.trySchedule(event, day, startTime, startTime + 1, team) == ScheduleResult.SCHEDULED) {
+                    kept.addLast(event);
+                }
+            }
+            done++;
+        }
+    }
+
+    /**
+     * Auxiliary method (private) that names a user of a thread.
+     * @param thread The number of the thread.
+     * @param user The number of the user within the thread.
+     * @return The name of the user.
+     */
+    private static String userName(int thread, int user) {
+        return "t" + thread + "u" + user;
+    }
+}
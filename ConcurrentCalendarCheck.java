@@ -0,0 +1,210 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Checks that ConcurrentCalendar keeps a consistent calendar when many threads
+ * schedule and cancel events at once, in locking and in optimistic mode.
+ * THREADS threads schedule events for teams of random users, so their users share
+ * stripes and words of the busy bitsets, and cancel some of the events they scheduled.
+ * They alternate phases that mostly schedule and phases that mostly cancel, so the
+ * event store grows and shrinks while they run. Once they are done, the events each
+ * thread kept must not overlap for any user, and the calendar must hold exactly those
+ * events: the same occupancy, event lists and busy bitsets for every user.
+ * Usage: java ConcurrentCalendarCheck [users]
+ * where users is the number of registered users (1000 by default).
+ */
+public class ConcurrentCalendarCheck {
+
+    private static final int THREADS = 16;           // Threads running at once
+    private static final int OPERATIONS = 45000;     // Operations of each thread
+    private static final int PHASE = 5000;           // Operations of each scheduling or cancelling phase
+    private static final int MAX_TEAM = 4;           // Largest number of participants of an event
+    private static final int DEFAULT_USERS = 1000;
+    private static final int FIRST_HOUR = 8;
+    private static final int HOURS_PER_DAY = 12;
+
+    /**
+     * An event scheduled by a thread and not cancelled by it.
+     */
+    private static class KeptEvent {
+        private final String name;
+        private final int day;
+        private final int startTime;
+        private final int endTime;
+        private final String[] users;
+
+        /**
+         * Constructor: Initializes the record of an event.
+         * @param name The name of the event.
+         * @param day The day of the week (1-5).
+         * @param startTime The start hour.
+         * @param endTime The end hour.
+         * @param users The participants, proponent first.
+         */
+        private KeptEvent(String name, int day, int startTime, int endTime, String[] users) {
+            this.name = name;
+            this.day = day;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.users = users;
+        }
+    }
+
+    /**
+     * Runs the check in both modes and prints the number of events left in each.
+     * @param args Optionally, the number of users.
+     * @throws InterruptedException If the main thread is interrupted while waiting.
+     * @throws IllegalStateException If the calendar is not consistent.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_USERS;
+        System.out.printf("locking mode: %d events, consistent%n", check(false, users));
+        System.out.printf("optimistic mode: %d events, consistent%n", check(true, users));
+    }
+
+    /**
+     * Auxiliary method (private) that runs the threads on a new calendar and checks it.
+     * @param optimistic true for optimistic mode, false for locking mode.
+     * @param users The number of users.
+     * @return The number of events left in the calendar.
+     * @throws InterruptedException If the main thread is interrupted while waiting.
+     * @throws IllegalStateException If the calendar is not consistent.
+     */
+    private static int check(boolean optimistic, int users) throws InterruptedException {
+        ConcurrentCalendar calendar = new ConcurrentCalendar(optimistic);
+        for (int u = 0; u < users; u++) {
+            calendar.addUser("u" + u);
+        }
+        List<List<KeptEvent>> kept = new ArrayList<>();
+        Throwable[] failures = new Throwable[THREADS];
+        Thread[] workers = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            List<KeptEvent> events = new ArrayList<>();
+            kept.add(events);
+            int thread = t;
+            workers[t] = new Thread(() -> work(calendar, thread, users, events));
+            workers[t].setUncaughtExceptionHandler((worker, e) -> failures[thread] = e);
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        for (Throwable failure : failures) {
+            if (failure != null) {
+                throw new IllegalStateException("A thread failed", failure);
+            }
+        }
+        return verify(calendar, users, kept);
+    }
+
+    /**
+     * Auxiliary method (private) with the operations of one thread.
+     * @param calendar The calendar.
+     * @param thread The number of the thread, which names its events.
+     * @param users The number of users.
+     * @param events Where the events scheduled and not cancelled by the thread are kept.
+     */
+    private static void work(ConcurrentCalendar calendar, int thread, int users, List<KeptEvent> events) {
+        Random random = new Random(thread * 31 + users);
+        for (int i = 0; i < OPERATIONS; i++) {
+            int cancelTenths = (i / PHASE) % 2 == 0 ? 2 : 8;
+            if (random.nextInt(10) < cancelTenths && !events.isEmpty()) {
+                KeptEvent event = events.remove(random.nextInt(events.size()));
+                if (!calendar.cancelEvent(event.name)) {
+                    throw new IllegalStateException("Event " + event.name + " could not be cancelled");
+                }
+            } else {
+                int day = 1 + random.nextInt(5);
+                int startTime = FIRST_HOUR + random.nextInt(HOURS_PER_DAY - 1);
+                int endTime = startTime + 1 + random.nextInt(Math.min(2, FIRST_HOUR + HOURS_PER_DAY - startTime));
+                String[] team = new String[1 + random.nextInt(MAX_TEAM)];
+                for (int j = 0; j < team.length; j++) {
+                    team[j] = "u" + random.nextInt(users);
+                }
+                String name = "t" + thread + "_" + i;
+                if (calendar.trySchedule(name, day, startTime, endTime, team) == ScheduleResult.SCHEDULED) {
+                    events.add(new KeptEvent(name, day, startTime, endTime, team));
+                }
+            }
+        }
+    }
+
+    /**
+     * Auxiliary method (private) that checks the calendar against the events kept by
+     * the threads, once all of them are done.
+     * @param calendar The calendar.
+     * @param users The number of users.
+     * @param kept The events kept by each thread.
+     * @return The number of events.
+     * @throws IllegalStateException If the calendar is not consistent.
+     */
+    private static int verify(ConcurrentCalendar calendar, int users, List<List<KeptEvent>> kept) {
+        long[] occupancy = new long[users];
+        int[] numEvents = new int[users];
+        int total = 0;
+        for (List<KeptEvent> events : kept) {
+            for (KeptEvent event : events) {
+                total++;
+                long mask = Calendar.timeMask(event.day, event.startTime, event.endTime);
+                Set<String> seen = new HashSet<>();
+                for (String user : event.users) {
+                    int id = Integer.parseInt(user.substring(1));
+                    if (seen.add(user)) {
+                        if ((occupancy[id] & mask) != 0) {
+                            throw new IllegalStateException("User " + user + " has overlapping events");
+                        }
+                        occupancy[id] |= mask;
+                        numEvents[id]++;
+                    }
+                }
+            }
+        }
+        if (calendar.getEventNumber() != total) {
+            throw new IllegalStateException("The calendar has " + calendar.getEventNumber()
+                    + " events instead of " + total);
+        }
+        Calendar inner = calendar.getCalendar();
+        int listed = 0;
+        EventIterator all = inner.iterator();
+        while (all.hasNext()) {
+            all.next();
+            listed++;
+        }
+        if (listed != total) {
+            throw new IllegalStateException("The time slot lists have " + listed + " events instead of " + total);
+        }
+        for (int id = 0; id < users; id++) {
+            int count = 0;
+            EventIterator it = inner.userIterator("u" + id);
+            while (it.hasNext()) {
+                it.next();
+                count++;
+            }
+            if (count != numEvents[id]) {
+                throw new IllegalStateException("User u" + id + " lists " + count + " events instead of " + numEvents[id]);
+            }
+        }
+        for (int day = 1; day <= 5; day++) {
+            for (int hour = FIRST_HOUR; hour < FIRST_HOUR + HOURS_PER_DAY; hour++) {
+                Set<String> free = new HashSet<>(Arrays.asList(inner.findFreeUsers(day, hour, hour + 1)));
+                long mask = Calendar.timeMask(day, hour, hour + 1);
+                for (int id = 0; id < users; id++) {
+                    boolean busy = (occupancy[id] & mask) != 0;
+                    if (busy == free.contains("u" + id)) {
+                        throw new IllegalStateException("The busy bitset of day " + day + " at " + hour
+                                + " is wrong for user u" + id);
+                    }
+                    if (busy != calendar.isUserOccupied(day, hour, hour + 1, "u" + id)) {
+                        throw new IllegalStateException("The occupancy of user u" + id + " is wrong on day "
+                                + day + " at " + hour);
+                    }
+                }
+            }
+        }
+        return total;
+    }
+}
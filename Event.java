@@ -7,7 +7,8 @@ public class Event {
     private int day; //  Day of the week (1 to 5)
     private int startTime; // // Event start time (8 to 19)
     private int endTime; // Event end time (9 to 20)
-    private String[] users;
+    private int proposer; // Id of the user who created the event
+    private int[] users; // Ids of the participants, in ascending order
 
     /**
      * Constructs a new Event object.
@@ -15,15 +16,17 @@ public class Event {
      * @param day The day of the week (1=Mon, 5=Fri).
      * @param startTime The start time of the event.
      * @param endTime The end time of the event.
-     * @param users The list of participating users (proponent first).
+     * @param proposer The id of the user who created the event.
+     * @param users The ids of the participating users (proponent included), sorted in ascending order.
      * @pre name != null && users != null
      * && day >= 1 && day <= 5 && startTime >= 8 && endTime <= 20 && startTime < endTime.
      */
-    public Event(String name, int day, int startTime, int endTime, String[] users) {
+    public Event(String name, int day, int startTime, int endTime, int proposer, int[] users) {
         this.name = name;
         this.day = day;
         this.startTime = startTime;
         this.endTime = endTime;
+        this.proposer = proposer;
         this.users = users;
     }
 
@@ -72,12 +75,47 @@ public class Event {
     }
 
     /**
-     * Returns the name of a specific user participating in the event.
+     * Returns the id of the user who created (proposed) the event.
+     * @return The proponent's id.
+     */
+    public int getProposer() {
+        return proposer;
+    }
+
+    /**
+     * Returns the id of a specific user participating in the event.
+     * Ids are kept in ascending order, so num is a rank rather than the
+     * position the user had in the schedule command.
      * @param num The index of the user in the internal array (0 <= num < getNumUsers()).
-     * @return The user's name.
+     * @return The user's id.
      * @pre num >= 0 && num < users.length
      */
-    public String getUser(int num){
+    public int getUserId(int num){
         return users[num];
     }
+
+    /**
+     * Checks if a user participates in the event.
+     * This method performs a binary search over the sorted participant ids.
+     * @param id The id of the user to search for.
+     * @return true if the user is a participant, false otherwise.
+     */
+    public boolean hasUser(int id){
+        int low=0;
+        int high=users.length-1;
+        boolean result=false;
+        while (low<=high&&!result) {
+            int mid=(low+high)>>>1;
+            if(users[mid]<id){
+                low=mid+1;
+            }
+            else if(users[mid]>id){
+                high=mid-1;
+            }
+            else{
+                result=true;
+            }
+        }
+        return result;
+    }
 }
\ No newline at end of file
@@ -1,45 +1,70 @@
 /**
  * Represents an iterator for a collection of Event objects,
  * allowing sequential traversal of the elements.
+ * The collection is given as a sequence of event lists that are visited one
+ * after the other, so several ordered lists can be traversed as a single sequence.
+ * The lists hold handles into an EventStore, and each Event object is only
+ * built when it is handed out by next().
  * This iterator follows the standard pattern: initialization, checking for
  * the next element, and retrieving the next element.
  */
 public class EventIterator {
 
-    private Event[] events; // Array reference to the collection (or its copy)
-    private int size;       // Number of valid elements in the array
-    private int nextIndex;  // Index of the next event to return
+    private EventStore store;  // Store holding the fields of the events
+    private EventList[] lists; // Lists visited in order
+    private int nextList;      // Index of the list holding the next event
+    private int nextIndex;     // Index of the next event within that list
+    private int remaining;     // Number of events that may still be returned
 
     /**
      * Constructor: Initializes the iterator at the start of the sequence.
-     * @param events The array containing the Event objects.
-     * @param size The number of valid elements in the array.
-     * @pre events != null
-     * @pre size >= 0 && size <= events.length
+     * @param store The store holding the events referred to by the lists.
+     * @param lists The lists of events, in the order they are to be visited.
+     * @pre store != null && lists != null && no element of lists is null
      */
-    public EventIterator(Event[] events, int size) {
-        this.events = events;
-        this.size = size;
+    public EventIterator(EventStore store, EventList[] lists) {
+        this(store, lists, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructor: Initializes the iterator at the start of the sequence,
+     * stopping after a maximum number of events.
+     * @param store The store holding the events referred to by the lists.
+     * @param lists The lists of events, in the order they are to be visited.
+     * @param limit The maximum number of events to return.
+     * @pre store != null && lists != null && no element of lists is null && limit >= 0
+     */
+    public EventIterator(EventStore store, EventList[] lists, int limit) {
+        this.store = store;
+        this.lists = lists;
+        this.nextList = 0;
         this.nextIndex = 0; // Positioned at the beginning
+        this.remaining = limit;
     }
 
     /**
      * Checks if there are more elements to visit.
-     * @return true if the traversal is not complete (i.e., nextIndex < size), false otherwise.
+     * Lists that are exhausted (or empty) are skipped.
+     * @return true if the traversal is not complete, false otherwise.
      * @pre true
      */
     public boolean hasNext() {
-        return nextIndex < size;
+        while (nextList < lists.length && nextIndex == lists[nextList].size()) {
+            nextList++;
+            nextIndex = 0;
+        }
+        return remaining > 0 && nextList < lists.length;
     }
 
     /**
      * Produces the next element in the sequence.
-     * It retrieves the element and advances the index for the next call.
+     * It builds the element from the store and advances the index for the next call.
      * @return The next Event object in the sequence.
      * @pre hasNext().
      */
     public Event next() {
         // We rely on the pre-condition hasNext() being checked externally.
-        return events[nextIndex++]; // Returns the element and advances the index
+        remaining--;
+        return store.get(lists[nextList].get(nextIndex++)); // Returns the element and advances the index
     }
 }
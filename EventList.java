@@ -0,0 +1,178 @@
+import java.util.Arrays;
+
+/**
+ * A list of events kept in chronological order (by day, then by start time).
+ * Events with the same day and start time keep the order in which they were added.
+ * The Calendar keeps one of these lists per user, one per weekly time slot and one
+ * per weekly time slot and number of participants, so events can be listed in order
+ * without scanning or sorting the whole collection.
+ * Events are referred to by their handles in the EventStore; each handle is kept
+ * together with the chronological key of its event (the number of its weekly
+ * slot), so the list can be searched without going back to the store.
+ * A list can be shared with a CalendarSnapshot; from then on it must not change,
+ * and the Calendar replaces it by a copy before the next change (copy-on-write).
+ */
+public class EventList {
+
+    private static final int[] NO_HANDLES = new int[0]; // Shared arrays of the empty lists
+    private static final byte[] NO_KEYS = new byte[0];
+
+    private int[] handles; // Handles of the events, in chronological order
+    private byte[] keys;   // Weekly slot of the event in the same position
+    private int size;      // Number of valid events in the arrays
+    private boolean shared; // true once a snapshot refers to the list
+
+    /**
+     * Constructor: Initializes an empty list. No array space is reserved
+     * until the first event is added.
+     */
+    public EventList() {
+        handles = NO_HANDLES;
+        keys = NO_KEYS;
+        size = 0;
+        shared = false;
+    }
+
+    /**
+     * Marks the list as shared with a snapshot, so that it is not changed any more.
+     */
+    public void share() {
+        shared = true;
+    }
+
+    /**
+     * Checks if the list is shared with a snapshot.
+     * @return true if the list must be copied before it is changed, false otherwise.
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * Creates a copy of the list, with its own arrays, that is not shared.
+     * @return A new list with the same events in the same order.
+     */
+    public EventList copy() {
+        EventList list = new EventList();
+        list.handles = Arrays.copyOf(handles, handles.length);
+        list.keys = Arrays.copyOf(keys, keys.length);
+        list.size = size;
+        return list;
+    }
+
+    /**
+     * Returns the number of events in the list.
+     * @return The number of events.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the list has no events.
+     * @return true if the list is empty, false otherwise.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Auxiliary method (private selector) that performs a binary search for the
+     * first position whose event has a key greater than (or, if inclusive,
+     * greater than or equal to) the given key.
+     * @param key The chronological key to search for.
+     * @param inclusive true to stop at the first equal key, false to skip equal keys.
+     * @return A position in [0, size].
+     */
+    private int searchPosition(int key, boolean inclusive) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int k = keys[mid];
+            if (k < key || !inclusive && k == key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Inserts an event in its chronological position, after any event
+     * with the same key. The arrays double when full.
+     * @param handle The handle of the event.
+     * @param key The weekly slot of the event (0 to 59), which orders the list.
+     * @pre handle >= 0 && key >= 0 && key < 60
+     */
+    public void add(int handle, int key) {
+        if (size == handles.length) {
+            int capacity = Math.max(4, handles.length * 2);
+            int[] temporaryHandles = new int[capacity];
+            byte[] temporaryKeys = new byte[capacity];
+            System.arraycopy(handles, 0, temporaryHandles, 0, size);
+            System.arraycopy(keys, 0, temporaryKeys, 0, size);
+            handles = temporaryHandles;
+            keys = temporaryKeys;
+        }
+        int position = searchPosition(key, false);
+        System.arraycopy(handles, position, handles, position + 1, size - position);
+        System.arraycopy(keys, position, keys, position + 1, size - position);
+        handles[position] = handle;
+        keys[position] = (byte) key;
+        size++;
+    }
+
+    /**
+     * Removes an event from the list, keeping the order of the remaining events.
+     * @param handle The handle of the event.
+     * @param key The weekly slot of the event, used to find it by binary search.
+     * @pre key is the key the event was added with
+     */
+    public void remove(int handle, int key) {
+        int i = searchPosition(key, true);
+        while (i < size && handles[i] != handle) {
+            i++;
+        }
+        if (i < size) {
+            System.arraycopy(handles, i + 1, handles, i, size - i - 1);
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            size--;
+        }
+    }
+
+    /**
+     * Finds the last event (in chronological order) whose key is not greater than
+     * a given key, by binary search. In a list of events that do not overlap in time,
+     * such as the list of a user, this is the event that may cover the given slot.
+     * @param key The weekly slot (0 to 59).
+     * @return The handle of that event, or -1 if every event starts after the key.
+     */
+    public int findLastAtOrBefore(int key) {
+        int position = searchPosition(key, false);
+        return position == 0 ? -1 : handles[position - 1];
+    }
+
+    /**
+     * Returns the handle of the event at a given position in chronological order.
+     * @param num The position (0 <= num < size()).
+     * @return The handle of the event at that position.
+     * @pre num >= 0 && num < size()
+     */
+    public int get(int num) {
+        return handles[num];
+    }
+
+    /**
+     * Replaces every handle by its new value after the store was compacted.
+     * The order of the list is unchanged.
+     * @param map The new handle of each old handle (as returned by EventStore.compact).
+     * @pre every handle of the list is mapped to a handle (not to -1)
+     */
+    public void remap(int[] map) {
+        for (int i = 0; i < size; i++) {
+            handles[i] = map[handles[i]];
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * The event lists of the users, indexed by user id, in a table that can be frozen
+ * for a snapshot in O(1).
+ * The table is a tree of nodes of WIDTH children over the bits of the id (a radix
+ * tree): the children of a node are the nodes one level down or, at the lowest
+ * level, the event lists. freeze returns a copy of the root, which shares
+ * everything below it, and marks the children of the root as shared. A shared node
+ * or list is never changed again: the first change that reaches it copies it
+ * (marking its own children as shared), so after a snapshot each change copies
+ * WIDTH references per level of the tree and the list it changes, instead of the
+ * lists of every user.
+ */
+public class EventListTable {
+
+    private static final int BITS = 5;             // Bits of the id consumed by each level
+    private static final int WIDTH = 1 << BITS;    // Children of every node
+    private static final int MASK = WIDTH - 1;
+
+    private Object[] children; // Nodes one level down, or event lists at the lowest level
+    private int shift;         // Bits of the id below this level (0 at the lowest level)
+    private boolean shared;    // true once a frozen table refers to the node
+
+    /**
+     * Constructor: Initializes an empty table.
+     */
+    public EventListTable() {
+        this(0);
+    }
+
+    /**
+     * Auxiliary constructor (private) that initializes an empty node of a given level.
+     * @param shift The bits of the id below the level of the node.
+     */
+    private EventListTable(int shift) {
+        children = new Object[WIDTH];
+        this.shift = shift;
+        shared = false;
+    }
+
+    /**
+     * Auxiliary method (private mutator) that copies a node, marking its children as
+     * shared, since they are now referred to by both the node and its copy.
+     * @return The copy of the node, which is not shared.
+     */
+    private EventListTable copy() {
+        EventListTable node = new EventListTable(shift);
+        node.children = children.clone();
+        for (int i = 0; i < WIDTH; i++) {
+            if (shift > 0 && children[i] != null) {
+                ((EventListTable) children[i]).shared = true;
+            } else if (children[i] != null) {
+                ((EventList) children[i]).share();
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Returns a frozen copy of the table, which later changes to this table do not
+     * affect. It costs O(WIDTH): only the root is copied.
+     * @return A table to be read only, with the lists as they are now.
+     */
+    public EventListTable freeze() {
+        return copy();
+    }
+
+    /**
+     * Returns the event list of a user, which must not be changed
+     * (see writable to change it).
+     * @param id The id of the user.
+     * @return The list of the user.
+     * @pre a list was set for id
+     */
+    public EventList get(int id) {
+        EventListTable node = this;
+        while (node.shift > 0) {
+            node = (EventListTable) node.children[(id >>> node.shift) & MASK];
+        }
+        return (EventList) node.children[id & MASK];
+    }
+
+    /**
+     * Returns the event list of a user, ready to be changed: the shared nodes on the
+     * way to it, and the list itself if it is shared, are replaced by copies.
+     * @param id The id of the user.
+     * @return The list of the user, which may now be changed.
+     * @pre a list was set for id, and this table is not frozen
+     */
+    public EventList writable(int id) {
+        EventListTable node = this;
+        while (node.shift > 0) {
+            node = node.writableChild((id >>> node.shift) & MASK);
+        }
+        int i = id & MASK;
+        EventList list = (EventList) node.children[i];
+        if (list.isShared()) {
+            list = list.copy();
+            node.children[i] = list;
+        }
+        return list;
+    }
+
+    /**
+     * Sets the event list of a user, adding levels to the tree if the id does not fit.
+     * @param id The id of the user.
+     * @param list The list of the user.
+     * @pre id >= 0 && list != null, and this table is not frozen
+     */
+    public void set(int id, EventList list) {
+        while ((id >>> shift) > MASK) {
+            // The root moves its children to a new node, which becomes its first child.
+            EventListTable lower = new EventListTable(shift);
+            lower.children = children;
+            children = new Object[WIDTH];
+            children[0] = lower;
+            shift += BITS;
+        }
+        EventListTable node = this;
+        while (node.shift > 0) {
+            node = node.writableChild((id >>> node.shift) & MASK);
+        }
+        node.children[id & MASK] = list;
+    }
+
+    /**
+     * Auxiliary method (private mutator) that returns a child node ready to be changed,
+     * creating it if it is missing and replacing it by a copy if it is shared.
+     * @param i The position of the child.
+     * @return The child node.
+     * @pre shift > 0
+     */
+    private EventListTable writableChild(int i) {
+        EventListTable child = (EventListTable) children[i];
+        if (child == null) {
+            child = new EventListTable(shift - BITS);
+            children[i] = child;
+        } else if (child.shared) {
+            child = child.copy();
+            children[i] = child;
+        }
+        return child;
+    }
+}
@@ -0,0 +1,161 @@
+import java.util.Random;
+
+/**
+ * Compares the chronological sort of the original Calendar, a selection sort over
+ * an array of events (eventSort), with the counting sort that orders the events of
+ * the initial file (Calendar.sortByTime), and with the whole bulk load built on it
+ * (Calendar.addEvents), for 10000, 100000 and 1000000 events.
+ * The selection sort takes quadratic time, so its largest run lasts tens of minutes;
+ * a smaller maximum size can be given to leave it out.
+ * The events are spread over random weekly slots, and the k-th event of a slot is
+ * given the users 2k and 2k+1, so no user has two events at the same time.
+ * Usage: java EventSortBenchmark [maximum number of events]
+ */
+public class EventSortBenchmark {
+
+    private static final int[] SIZES = {10000, 100000, 1000000}; // Numbers of events measured
+    private static final int SLOTS = 60;             // Weekly slots (5 days of 12 hours)
+    private static final int HOURS_PER_DAY = 12;
+    private static final int FIRST_HOUR = 8;
+    private static final int WARMUP_RUNS = 3;        // Runs of the smallest size discarded first
+
+    /**
+     * Runs the benchmark and prints one line per size, with the milliseconds taken
+     * by the selection sort, the counting sort and the bulk load.
+     * @param args Optionally, the largest number of events to measure.
+     */
+    public static void main(String[] args) {
+        int maximum = args.length > 0 ? Integer.parseInt(args[0]) : SIZES[SIZES.length - 1];
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            measure(SIZES[0]);
+        }
+        System.out.printf("%9s %18s %16s %14s%n", "events", "selection sort ms", "sortByTime ms", "addEvents ms");
+        for (int size : SIZES) {
+            if (size <= maximum) {
+                double[] times = measure(size);
+                System.out.printf("%9d %18.1f %16.1f %14.1f%n", size, times[0], times[1], times[2]);
+            }
+        }
+    }
+
+    /**
+     * Auxiliary method (private) that generates a batch of events and sorts or loads it
+     * in each of the three ways, each one from the batch in generation order.
+     * @param size The number of events.
+     * @return The milliseconds of the selection sort, of sortByTime and of addEvents.
+     */
+    private static double[] measure(int size) {
+        Random random = new Random(size);
+        String[] names = new String[size];
+        int[] days = new int[size];
+        int[] startTimes = new int[size];
+        int[] endTimes = new int[size];
+        String[][] eventUsers = new String[size][];
+        int[] perSlot = new int[SLOTS];
+        int numUsers = 0;
+        for (int i = 0; i < size; i++) {
+            int slot = random.nextInt(SLOTS);
+            int k = perSlot[slot]++;
+            names[i] = "e" + i;
+            days[i] = slot / HOURS_PER_DAY + 1;
+            startTimes[i] = slot % HOURS_PER_DAY + FIRST_HOUR;
+            endTimes[i] = startTimes[i] + 1;
+            eventUsers[i] = new String[] {"u" + 2 * k, "u" + (2 * k + 1)};
+            numUsers = Math.max(numUsers, 2 * k + 2);
+        }
+        Event[] events = new Event[size];
+        for (int i = 0; i < size; i++) {
+            events[i] = new Event(names[i], days[i], startTimes[i], endTimes[i], 0, new int[] {0, 1});
+        }
+        long start = System.nanoTime();
+        eventSort(events, size);
+        double selection = (System.nanoTime() - start) / 1e6;
+
+        start = System.nanoTime();
+        int[] order = Calendar.sortByTime(days, startTimes);
+        double counting = (System.nanoTime() - start) / 1e6;
+        checkSorted(events, days, startTimes, order);
+
+        Calendar calendar = new Calendar();
+        for (int u = 0; u < numUsers; u++) {
+            calendar.addUser("u" + u);
+        }
+        start = System.nanoTime();
+        calendar.addEvents(names, days, startTimes, endTimes, eventUsers);
+        double load = (System.nanoTime() - start) / 1e6;
+        return new double[] {selection, counting, load};
+    }
+
+    /**
+     * Auxiliary method (private) that checks that both sorts put the events in the
+     * same chronological order of slots, so they are measured doing the same work.
+     * @param events The events sorted by eventSort.
+     * @param days The days of the events, in generation order.
+     * @param startTimes The start hours of the events, in generation order.
+     * @param order The positions of the events in the order of sortByTime.
+     */
+    private static void checkSorted(Event[] events, int[] days, int[] startTimes, int[] order) {
+        for (int i = 0; i < order.length; i++) {
+            if (events[i].getDay() != days[order[i]] || events[i].getStartTime() != startTimes[order[i]]) {
+                throw new IllegalStateException("The sorts disagree at position " + i);
+            }
+        }
+    }
+
+    /**
+     * Auxiliary method (private) with the sort of the original Calendar: it sorts the
+     * events chronologically (by day, then by start time) using the Selection Sort algorithm.
+     * @param events The events.
+     * @param size The number of events.
+     */
+    private static void eventSort(Event[] events, int size) {
+        // The outer loop iterates size-1 times, gradually expanding the sorted portion.
+        for (int i = 0; i < size - 1; i++) {
+            // Swap the minimum element with the current starting position of the unsorted portion.
+            swap(events, i, findEarliestEventIndex(events, i, size));
+        }
+    }
+
+    /**
+     * Auxiliary method (private) used by the Selection Sort algorithm.
+     * Finds the index of the chronologically earliest event (minimum)
+     * within a specified unsorted range [index, size).
+     * @param events The events.
+     * @param index The starting index of the sub-array to search (inclusive).
+     * @param size The exclusive upper bound of the search range.
+     * @return The index of the earliest event found in the range.
+     */
+    private static int findEarliestEventIndex(Event[] events, int index, int size) {
+        int minIndex = index;
+        for (int i = index + 1; i < size; i++) {
+            if (isTheFirstEventEarlierThanTheSecond(events[i], events[minIndex])) {
+                minIndex = i;
+            }
+        }
+        return minIndex;
+    }
+
+    /**
+     * Auxiliary method (private) to compare two events chronologically:
+     * 1) Day (ascending), and 2) Start Time (ascending).
+     * @param event1 The first event to compare.
+     * @param event2 The second event to compare.
+     * @return true if event1 is scheduled chronologically earlier than event2, false otherwise.
+     */
+    private static boolean isTheFirstEventEarlierThanTheSecond(Event event1, Event event2) {
+        return event1.getDay() < event2.getDay() || event1.getDay() == event2.getDay()
+                && event1.getStartTime() < event2.getStartTime();
+    }
+
+    /**
+     * Auxiliary method (private) to swap two events in the array.
+     * @param events The events.
+     * @param index1 The index of the first event.
+     * @param index2 The index of the second event.
+     */
+    private static void swap(Event[] events, int index1, int index2) {
+        Event tmp = events[index1];
+        events[index1] = events[index2];
+        events[index2] = tmp;
+    }
+}
@@ -0,0 +1,295 @@
+import java.util.Arrays;
+
+/**
+ * Columnar storage of the events of the Calendar.
+ * Instead of one Event object per event, the fields are kept in parallel arrays
+ * (columns): days, start and end times in byte arrays, participant counts and
+ * proponents in int arrays, and names and participant ids in side arrays.
+ * An event is identified by its handle, the position of its fields in the columns.
+ * Event objects are only built when an event has to be handed out (see get).
+ * Handles are given out in increasing order and are not reused when an event
+ * is removed, so a handle stays valid (and its fields unchanged) until the
+ * store is compacted, which renumbers the remaining events.
+ */
+public class EventStore {
+
+    private String[] names;       // Name of each event
+    private byte[] days;          // Day of the week of each event (1 to 5)
+    private byte[] startTimes;    // Start hour of each event (8 to 19)
+    private byte[] endTimes;      // End hour of each event (9 to 20)
+    private int[] numUsers;       // Number of participants of each event
+    private int[] proposers;      // Id of the proponent of each event
+    private int[][] participants; // Ids of the participants of each event, in ascending order
+    private boolean[] removed;    // true for the handles of removed events
+    private int size;             // Number of handles given out (0 to size-1)
+    private int numRemoved;       // Number of those handles whose event was removed
+
+    /**
+     * Constructor: Initializes an empty store with no capacity.
+     */
+    public EventStore() {
+        names = new String[0];
+        days = new byte[0];
+        startTimes = new byte[0];
+        endTimes = new byte[0];
+        numUsers = new int[0];
+        proposers = new int[0];
+        participants = new int[0][];
+        removed = new boolean[0];
+        size = 0;
+        numRemoved = 0;
+    }
+
+    /**
+     * Returns the number of events in the store (handles given out and not removed).
+     * @return The number of events.
+     */
+    public int getNumEvents() {
+        return size - numRemoved;
+    }
+
+    /**
+     * Returns the number of handles given out since the last compaction,
+     * including those of removed events.
+     * @return The number of handles.
+     */
+    public int getNumHandles() {
+        return size;
+    }
+
+    /**
+     * Returns the number of removed events whose handles have not been reclaimed yet.
+     * @return The number of removed handles.
+     */
+    public int getNumRemoved() {
+        return numRemoved;
+    }
+
+    /**
+     * Returns the number of handles the columns can hold.
+     * @return The length of the columns.
+     */
+    public int getCapacity() {
+        return days.length;
+    }
+
+    /**
+     * Checks if the columns have no room for another handle.
+     * @return true if every position of the columns has been given out, false otherwise.
+     */
+    public boolean isFull() {
+        return size == days.length;
+    }
+
+    /**
+     * Stores a new event and gives out its handle.
+     * @param name The name of the event.
+     * @param day The day of the week (1-5).
+     * @param startTime The start hour (8-19).
+     * @param endTime The end hour (9-20).
+     * @param proposer The id of the proponent.
+     * @param users The ids of the participants, in ascending order.
+     * @return The handle of the new event.
+     * @pre !isFull()
+     */
+    public int add(String name, int day, int startTime, int endTime, int proposer, int[] users) {
+        names[size] = name;
+        days[size] = (byte) day;
+        startTimes[size] = (byte) startTime;
+        endTimes[size] = (byte) endTime;
+        numUsers[size] = users.length;
+        proposers[size] = proposer;
+        participants[size] = users;
+        removed[size] = false;
+        return size++;
+    }
+
+    /**
+     * Removes an event. Its fields are left in the columns, and its handle
+     * is only reclaimed by the next compaction.
+     * @param handle The handle of the event.
+     * @pre handle >= 0 && handle < getNumHandles() && !isRemoved(handle)
+     */
+    public void remove(int handle) {
+        removed[handle] = true;
+        numRemoved++;
+    }
+
+    /**
+     * Checks if the event of a handle has been removed.
+     * @param handle The handle.
+     * @return true if the event was removed, false otherwise.
+     * @pre handle >= 0 && handle < getNumHandles()
+     */
+    public boolean isRemoved(int handle) {
+        return removed[handle];
+    }
+
+    //--------Column selectors--------
+    /**
+     * Returns the name of an event.
+     * @param handle The handle of the event.
+     * @return The event name.
+     * @pre handle >= 0 && handle < getNumHandles()
+     */
+    public String getName(int handle) {
+        return names[handle];
+    }
+
+    /**
+     * Returns the day of the week of an event.
+     * @param handle The handle of the event.
+     * @return The day (1 to 5).
+     * @pre handle >= 0 && handle < getNumHandles()
+     */
+    public int getDay(int handle) {
+        return days[handle];
+    }
+
+    /**
+     * Returns the start hour of an event.
+     * @param handle The handle of the event.
+     * @return The start hour (8 to 19).
+     * @pre handle >= 0 && handle < getNumHandles()
+     */
+    public int getStartTime(int handle) {
+        return startTimes[handle];
+    }
+
+    /**
+     * Returns the end hour of an event.
+     * @param handle The handle of the event.
+     * @return The end hour (9 to 20).
+     * @pre handle >= 0 && handle < getNumHandles()
+     */
+    public int getEndTime(int handle) {
+        return endTimes[handle];
+    }
+
+    /**
+     * Returns the number of participants of an event.
+     * @param handle The handle of the event.
+     * @return The number of participants.
+     * @pre handle >= 0 && handle < getNumHandles()
+     */
+    public int getNumUsers(int handle) {
+        return numUsers[handle];
+    }
+
+    /**
+     * Returns the id of the proponent of an event.
+     * @param handle The handle of the event.
+     * @return The proponent's id.
+     * @pre handle >= 0 && handle < getNumHandles()
+     */
+    public int getProposer(int handle) {
+        return proposers[handle];
+    }
+
+    /**
+     * Returns the id of a participant of an event (participants are in ascending id order).
+     * @param handle The handle of the event.
+     * @param num The rank of the participant (0 <= num < getNumUsers(handle)).
+     * @return The participant's id.
+     * @pre handle >= 0 && handle < getNumHandles()
+     */
+    public int getUserId(int handle, int num) {
+        return participants[handle][num];
+    }
+
+    /**
+     * Checks if a user participates in an event (binary search over the sorted ids).
+     * @param handle The handle of the event.
+     * @param id The id of the user.
+     * @return true if the user is a participant, false otherwise.
+     * @pre handle >= 0 && handle < getNumHandles()
+     */
+    public boolean hasUser(int handle, int id) {
+        return Arrays.binarySearch(participants[handle], id) >= 0;
+    }
+
+    /**
+     * Builds an Event object with the fields of an event.
+     * @param handle The handle of the event.
+     * @return A new Event with the same name, times and participants.
+     * @pre handle >= 0 && handle < getNumHandles()
+     */
+    public Event get(int handle) {
+        return new Event(names[handle], days[handle], startTimes[handle], endTimes[handle],
+                proposers[handle], participants[handle]);
+    }
+
+    /**
+     * Creates a read-only view of the events stored so far, sharing the columns.
+     * The view stays valid while the store changes: new events are written past
+     * the handles of the view, removal only marks a handle, and resizing or
+     * compacting moves the store to new arrays, leaving the shared ones untouched.
+     * Whether a handle was removed is not part of the view.
+     * @return A new store with the same columns and number of handles, not to be modified.
+     */
+    public EventStore view() {
+        EventStore view = new EventStore();
+        view.names = names;
+        view.days = days;
+        view.startTimes = startTimes;
+        view.endTimes = endTimes;
+        view.numUsers = numUsers;
+        view.proposers = proposers;
+        view.participants = participants;
+        view.removed = removed;
+        view.size = size;
+        view.numRemoved = numRemoved;
+        return view;
+    }
+
+    //--------Capacity management--------
+    /**
+     * Moves the columns to new arrays with the given length. Handles are unchanged.
+     * @param capacity The new length of the columns.
+     * @pre capacity >= getNumHandles()
+     */
+    public void resize(int capacity) {
+        names = Arrays.copyOf(names, capacity);
+        days = Arrays.copyOf(days, capacity);
+        startTimes = Arrays.copyOf(startTimes, capacity);
+        endTimes = Arrays.copyOf(endTimes, capacity);
+        numUsers = Arrays.copyOf(numUsers, capacity);
+        proposers = Arrays.copyOf(proposers, capacity);
+        participants = Arrays.copyOf(participants, capacity);
+        removed = Arrays.copyOf(removed, capacity);
+    }
+
+    /**
+     * Moves the events that were not removed to new columns of the given length,
+     * keeping their relative order, and reclaims the handles of the removed events.
+     * The remaining events receive the handles 0 to getNumEvents()-1.
+     * @param capacity The new length of the columns.
+     * @return An array that maps every old handle to its new handle
+     * (or to -1 if its event had been removed).
+     * @pre capacity >= getNumEvents()
+     */
+    public int[] compact(int capacity) {
+        int[] map = new int[size];
+        EventStore compacted = new EventStore();
+        compacted.resize(capacity);
+        for (int h = 0; h < size; h++) {
+            if (removed[h]) {
+                map[h] = -1;
+            } else {
+                map[h] = compacted.add(names[h], days[h], startTimes[h], endTimes[h],
+                        proposers[h], participants[h]);
+            }
+        }
+        names = compacted.names;
+        days = compacted.days;
+        startTimes = compacted.startTimes;
+        endTimes = compacted.endTimes;
+        numUsers = compacted.numUsers;
+        proposers = compacted.proposers;
+        participants = compacted.participants;
+        removed = compacted.removed;
+        size = compacted.size;
+        numRemoved = 0;
+        return map;
+    }
+}
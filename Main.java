@@ -1,5 +1,20 @@
 import java.io.*;
-import java.util.Scanner;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @author: 74256_74029
@@ -11,6 +26,11 @@ import java.util.Scanner;
  * It is solely responsible for handling user input (I/O) and delegating business logic
  * operations to the Calendar system class.
  * It defines all necessary command and output message constants.
+ * Commands are interpreted by a pipeline: one thread reads and parses them,
+ * a single writer thread carries them out in input order, and 'show' and 'top'
+ * are formatted by a pool of reader threads from snapshots of the calendar.
+ * The output of each command is printed in input order, as if the commands
+ * had been carried out one after the other.
  */
 public class Main {
 
@@ -20,13 +40,20 @@ public class Main {
     private static final String CMD_CANCEL = "cancel";
     private static final String CMD_SHOW = "show";
     private static final String CMD_TOP = "top";
+    private static final String CMD_FREE = "free";
+    private static final String CMD_FIND_SLOT = "findslot";
     private static final String CMD_EXIT = "exit";
+    private static final String CMD_SAVE = "save";
+
+    // Line terminator of the messages printed on their own line.
+    private static final String NEWLINE = System.lineSeparator();
 
     // User interaction messages (Output format definitions):
     // Defining all fixed output messages as constants ensures the application strictly.
     private static final String ERROR_MSG="File Not Found";
     private static final String MSG_EXIT = "Application exited.";
     private static final String MSG_INVALID_CMD = "Invalid command.";
+    private static final String MSG_INVALID_SLOT = "Invalid time slot.";
     private static final String MSG_USER_ALREADY_REGISTERED = "User already registered.";
     private static final String MSG_USER_CREATED_SUCCESS = "User successfully created.";
     private static final String MSG_SOME_USER_NOT_REGISTERED = "Some user not registered.";
@@ -41,248 +68,785 @@ public class Main {
     private static final String MSG_NO_EVENTS = "User %s has no events.\n";
     private static final String MSG_SHOW_EVENT="%s, day %d, %d-%d, %d participants.\n";
     private static final String MSG_NO_GLOBAL_EVENTS = "No events registered.";
+    private static final String MSG_NO_FREE_USERS = "No users available.";
+    private static final String MSG_FREE_SLOT = "Free slot: day %d, %d-%d.\n";
+    private static final String MSG_NO_FREE_SLOT = "No common slot available.";
+    private static final String MSG_CONFLICT = "Conflict with event %s of user %s.\n";
+    private static final String MSG_SAVED = "Calendar successfully saved.";
+    private static final String MSG_NOT_SAVED = "Calendar could not be saved.";
+
+    // Fixed output lines, encoded once (message followed by the line terminator).
+    private static final byte[] LINE_END = OutputBuffer.encode(NEWLINE);
+    private static final byte[] LINE_EVENT_ALREADY_EXISTS = OutputBuffer.encode(MSG_EVENT_ALREADY_EXISTS+NEWLINE);
+    private static final byte[] LINE_EVENT_CANCELED_SUCCESS = OutputBuffer.encode(MSG_EVENT_CANCELED_SUCCESS+NEWLINE);
+    private static final byte[] LINE_EVENT_SCHEDULED_SUCCESS = OutputBuffer.encode(MSG_EVENT_SCHEDULED_SUCCESS+NEWLINE);
+    private static final byte[] LINE_EXIT = OutputBuffer.encode(MSG_EXIT+NEWLINE);
+    private static final byte[] LINE_INVALID_CMD = OutputBuffer.encode(MSG_INVALID_CMD+NEWLINE);
+    private static final byte[] LINE_INVALID_SLOT = OutputBuffer.encode(MSG_INVALID_SLOT+NEWLINE);
+    private static final byte[] LINE_NO_FREE_SLOT = OutputBuffer.encode(MSG_NO_FREE_SLOT+NEWLINE);
+    private static final byte[] LINE_NO_FREE_USERS = OutputBuffer.encode(MSG_NO_FREE_USERS+NEWLINE);
+    private static final byte[] LINE_NOT_SAVED = OutputBuffer.encode(MSG_NOT_SAVED+NEWLINE);
+    private static final byte[] LINE_NO_GLOBAL_EVENTS = OutputBuffer.encode(MSG_NO_GLOBAL_EVENTS+NEWLINE);
+    private static final byte[] LINE_PROPOSER_NOT_AVAILABLE = OutputBuffer.encode(MSG_PROPOSER_NOT_AVAILABLE+NEWLINE);
+    private static final byte[] LINE_SOME_USER_NOT_AVAILABLE = OutputBuffer.encode(MSG_SOME_USER_NOT_AVAILABLE+NEWLINE);
+    private static final byte[] LINE_SAVED = OutputBuffer.encode(MSG_SAVED+NEWLINE);
+    private static final byte[] LINE_SOME_USER_NOT_REGISTERED = OutputBuffer.encode(MSG_SOME_USER_NOT_REGISTERED+NEWLINE);
+    private static final byte[] LINE_USER_ALREADY_REGISTERED = OutputBuffer.encode(MSG_USER_ALREADY_REGISTERED+NEWLINE);
+    private static final byte[] LINE_USER_CREATED_SUCCESS = OutputBuffer.encode(MSG_USER_CREATED_SUCCESS+NEWLINE);
+    private static final byte[] LINE_USER_NOT_REGISTERED = OutputBuffer.encode(MSG_USER_NOT_REGISTERED+NEWLINE);
+    // Pieces of the MSG_SHOW_EVENT line, written around its name and numbers (see writeEvent).
+    private static final byte[] SHOW_DAY = OutputBuffer.encode(", day ");
+    private static final byte[] SHOW_COMMA = OutputBuffer.encode(", ");
+    private static final byte[] SHOW_HYPHEN = OutputBuffer.encode("-");
+    private static final byte[] SHOW_PARTICIPANTS = OutputBuffer.encode(" participants.\n");
+
+    // Command line option that turns on the verbose output mode.
+    private static final String OPT_VERBOSE = "--verbose";
+    // Command line option, followed by a file name, that loads a saved calendar
+    // instead of the initial file.
+    private static final String OPT_SNAPSHOT = "--snapshot";
+    // Command line option, followed by a file name, that logs every accepted change
+    // to that file and replays the changes already in it at startup.
+    private static final String OPT_LOG = "--log";
+    // Pieces of the log records, which are written as the commands were read (see writeRecord).
+    private static final byte[] RECORD_SEPARATOR = OutputBuffer.encode(" ");
+    private static final byte[] RECORD_END = OutputBuffer.encode("\n");
+    // Name of the record a log starts with after a save, followed by the id and the path
+    // of the saved calendar (see writeSavedRecord).
+    private static final String RECORD_SAVED = "saved";
+    // Suffix of the file a calendar is saved to before it replaces the previous one.
+    private static final String SAVE_SUFFIX = ".tmp";
+    // Bytes buffered when a saved calendar is written or read.
+    private static final int SAVE_BUFFER = 1 << 16;
+
+    // Command name that marks the end of the input when it ends before 'exit'.
+    private static final String END_OF_INPUT = "";
+    // Arguments of commands without text or numeric arguments.
+    private static final String[] NO_WORDS = new String[0];
+    private static final int[] NO_NUMBERS = new int[0];
+    // Number of commands (and of outputs) that may wait between two pipeline stages.
+    private static final int PIPELINE_DEPTH = 1024;
+    // Bytes the standard output buffer holds before it is written out.
+    private static final int OUTPUT_THRESHOLD = 1 << 16;
+    // Marks the end of the outputs for the printing stage.
+    private static final Future<OutputBuffer> END_OF_OUTPUT = CompletableFuture.completedFuture(null);
 
     // Constants used for command processing and validation ranges:
-    // Index of the event creator/proponent in the users array.
-    private static final int PROPOSER_NUMBER=0;
     // Used to check if a user has zero events.
     private static final int NO_EVENTS=0;
+    // Used to start searching for free slots at the beginning of the week.
+    private static final int FIRST_SLOT=0;
+    // Returned by the calendar when no free slot exists.
+    private static final int NO_SLOT=-1;
     // Minimum valid day of the week (Monday).
 
     /**
-     * Processes the 'create' command by reading a user name and attempting to register it.
+     * Processes the 'create' command by attempting to register the user it names.
      * Handles the specific output messages based on whether the user already exists.
-     * @param scanner Scanner object for reading input.
+     * @param command The command, whose only text argument is the user name.
      * @param calendar The system object managing users and events.
-     * @pre scanner != null && calendar != null
+     * @param out The output of the command.
+     * @pre command != null && calendar != null && out != null
      */
-    private static void processCreate(Scanner scanner,Calendar calendar){
-        String user=scanner.next();
+    private static void processCreate(Command command,Calendar calendar,OutputBuffer out){
+        String user=command.getWord(0);
 
         // Checks constraint: User already registered.
         if(calendar.doesUserExist(user)){
-            System.out.println(MSG_USER_ALREADY_REGISTERED);
+            out.write(LINE_USER_ALREADY_REGISTERED);
         }
         else{
             calendar.addUser(user);
-            System.out.println(MSG_USER_CREATED_SUCCESS);
+            out.write(LINE_USER_CREATED_SUCCESS);
         }
     }
 
     /**
-     * Processes the 'schedule' command, reading all event and participant details,
-     * and applying the necessary validation constraints in strict priority order.
-     * @param scanner Scanner object for reading input
-     * (reads across multiple lines for participants).
+     * Processes the 'schedule' command, with all the event and participant details,
+     * applying the necessary validation constraints in strict priority order
+     * (the calendar checks them all in a single pass, see Calendar.trySchedule).
+     * In verbose mode, an availability rejection is followed by the event and the
+     * user that caused it.
+     * A time slot outside the bookable week is rejected before any other check.
+     * @param command The command: the event name followed by the participants,
+     * and the day, start time and end time.
      * @param calendar The system object managing users and events.
-     * @pre scanner != null && calendar != null
+     * @param verbose true to display conflict diagnostics.
+     * @param out The output of the command.
+     * @pre command != null && calendar != null && out != null
      */
-    private static void processSchedule(Scanner scanner,Calendar calendar){
-        String event= scanner.next();  // 1. Read event parameters.
-        int day=scanner.nextInt();
-        int startTime=scanner.nextInt();
-        int endTime=scanner.nextInt();
-        String[] eventUsers= new String[scanner.nextInt()]; // 2. Read participant list.
-        for(int i=0;i<eventUsers.length;i++){
-            eventUsers[i]=scanner.next();
-        }  // Validation sequence starts
-        if(calendar.doesAllUserExist(eventUsers)){
-            if(!calendar.doesEventExist(event)){
-                if(!calendar.isUserOccupied(day, startTime,endTime,eventUsers[PROPOSER_NUMBER])){
-                    if(!calendar.areAllUserOccupied(day, startTime,endTime,eventUsers)){
-                        calendar.addEvent(event,day,startTime,endTime,eventUsers);
-                        System.out.println(MSG_EVENT_SCHEDULED_SUCCESS);
-                    }
-                    else{System.out.println(MSG_SOME_USER_NOT_AVAILABLE);}
-                }
-                else{System.out.println(MSG_PROPOSER_NOT_AVAILABLE);}
+    private static void processSchedule(Command command,Calendar calendar,boolean verbose,OutputBuffer out){
+        String event=command.getWord(0);  // 1. Event parameters.
+        int day=command.getNumber(0);
+        int startTime=command.getNumber(1);
+        int endTime=command.getNumber(2);
+        String[] eventUsers=command.getWords(1); // 2. Participant list.
+        if(Calendar.isValidSlot(day,startTime,endTime)){
+            // Validation and creation
+            ScheduleResult result=calendar.trySchedule(event,day,startTime,endTime,eventUsers);
+            switch (result) {
+                case SCHEDULED -> out.write(LINE_EVENT_SCHEDULED_SUCCESS);
+                case SOME_USER_NOT_REGISTERED -> out.write(LINE_SOME_USER_NOT_REGISTERED);
+                case EVENT_ALREADY_EXISTS -> out.write(LINE_EVENT_ALREADY_EXISTS);
+                case PROPOSER_NOT_AVAILABLE -> out.write(LINE_PROPOSER_NOT_AVAILABLE);
+                case SOME_USER_NOT_AVAILABLE -> out.write(LINE_SOME_USER_NOT_AVAILABLE);
+            }
+            if(verbose&&(result==ScheduleResult.PROPOSER_NOT_AVAILABLE
+                    ||result==ScheduleResult.SOME_USER_NOT_AVAILABLE)){
+                out.write(String.format(MSG_CONFLICT,calendar.getConflictEvent(),calendar.getConflictUser()));
             }
-            else{System.out.println(MSG_EVENT_ALREADY_EXISTS);}
         }
-        else{System.out.println(MSG_SOME_USER_NOT_REGISTERED);}
+        else{out.write(LINE_INVALID_SLOT);}
     }
 
     /**
-     * Processes the 'cancel' command, reading the event name and the proposer's name.
+     * Processes the 'cancel' command, with the event name and the proposer's name.
      * It enforces the required validation constraints
      * in priority order before cancelling the event.
-     * @param scanner Scanner object for reading input.
+     * @param command The command, whose text arguments are the event and the proposer.
      * @param calendar The system object managing events and users.
-     * @pre scanner != null && calendar != null
+     * @param out The output of the command.
+     * @pre command != null && calendar != null && out != null
      */
-    private static void processCancel(Scanner scanner,Calendar calendar){
-        // Read command parameters
-        String event= scanner.next();
-        String proposer=scanner.next();
+    private static void processCancel(Command command,Calendar calendar,OutputBuffer out){
+        // Command parameters
+        String event=command.getWord(0);
+        String proposer=command.getWord(1);
         if(calendar.doesUserExist(proposer)){
             if(calendar.isEventInUserCalendar(event,proposer)){
-                if(calendar.didUserCreateEvent(event,proposer,PROPOSER_NUMBER)){
+                if(calendar.didUserCreateEvent(event,proposer)){
                     calendar.cancelEvent(event);
-                    System.out.println(MSG_EVENT_CANCELED_SUCCESS);
+                    out.write(LINE_EVENT_CANCELED_SUCCESS);
                 }
-                else{System.out.printf(MSG_NOT_PROPOSER,proposer,event);}
+                else{out.write(String.format(MSG_NOT_PROPOSER,proposer,event));}
 
             }
-            else{System.out.printf(MSG_EVENT_NOT_FOUND,proposer);}
+            else{out.write(String.format(MSG_EVENT_NOT_FOUND,proposer));}
         }
-        else{System.out.println(MSG_USER_NOT_REGISTERED);}
+        else{out.write(LINE_USER_NOT_REGISTERED);}
     }
 
     /**
      * Lists all events associated with a specific user, displaying details in chronological order.
-     * This implementation traverses the events collection using the Iterator pattern.
+     * This implementation traverses the user's own event list using the Iterator pattern.
      * @param user The name of the user whose calendar is to be displayed.
      * @param calendar The system object managing events.
-     * @pre user != null && calendar != null
+     * @param out The output of the command.
+     * @pre user != null && calendar != null && calendar.doesUserExist(user)
      */
-    private static void showUserEvents(String user,Calendar calendar){
-        // Obtain the iterator from the system class (collection pattern).
-        EventIterator it=calendar.iterator();
+    private static void showUserEvents(String user,CalendarView calendar,OutputBuffer out){
+        // Obtain the iterator over the user's events from the system class (collection pattern).
+        // The events are already in chronological order.
+        EventIterator it=calendar.userIterator(user);
 
-        // Iterate through all events stored in the system.
         while(it.hasNext()){
             Event j=it.next();
 
-            // Filter: Check if the current user is a participant in this specific event.
-            if(calendar.isUserInEvent(j,user)){
-                // Extract event details using accessor methods (selectors).
-                String event=j.getName();
-                int day=j.getDay();
-                int startTime=j.getStartTime();
-                int endTime=j.getEndTime();
-                int numUsers=j.getNumUsers();
-                System.out.printf(MSG_SHOW_EVENT,event,day,startTime,endTime,numUsers);
-            }
+            writeEvent(j,out);
         }
     }
 
     /**
-     * Processes the 'show' command. Reads the target user name, verifies user existence,
-     * checks for events in the user's calendar, and displays them chronologically.
-     * @param scanner Scanner object for reading input.
-     * @param calendar The system object managing events and users.
-     * @pre scanner != null && calendar != null
+     * Auxiliary method (private mutator) that writes the MSG_SHOW_EVENT line of an event.
+     * The fixed pieces of the line are written as encoded bytes and the numbers are
+     * formatted by the output buffer, which avoids parsing the format for every event.
+     * @param j The event.
+     * @param out The output of the command.
+     * @pre j != null && out != null
      */
-    private static void processShow(Scanner scanner,Calendar calendar){
-        String user=scanner.next();
+    private static void writeEvent(Event j,OutputBuffer out){
+        // Extract event details using accessor methods (selectors).
+        out.write(j.getName());
+        out.write(SHOW_DAY);
+        out.write(j.getDay());
+        out.write(SHOW_COMMA);
+        out.write(j.getStartTime());
+        out.write(SHOW_HYPHEN);
+        out.write(j.getEndTime());
+        out.write(SHOW_COMMA);
+        out.write(j.getNumUsers());
+        out.write(SHOW_PARTICIPANTS);
+    }
+
+    /**
+     * Processes the 'show' command. Verifies that the target user exists,
+     * checks for events in the user's calendar, and displays them chronologically
+     * (the user's event list is kept in order, so no sorting is needed).
+     * @param command The command, whose only text argument is the user name.
+     * @param calendar The events to display: the calendar itself or a snapshot of it.
+     * @param out The output of the command.
+     * @pre command != null && calendar != null && out != null
+     */
+    private static void processShow(Command command,CalendarView calendar,OutputBuffer out){
+        String user=command.getWord(0);
         if(calendar.doesUserExist(user)){
             if(calendar.doesUserHaveEvents(user)){
-                calendar.eventSort();
-
                 // Display only the events involving this specific user.
-                showUserEvents(user,calendar);
+                showUserEvents(user,calendar,out);
             }
-            else{System.out.printf(MSG_NO_EVENTS,user);}
+            else{out.write(String.format(MSG_NO_EVENTS,user));}
         }
-        else{System.out.println(MSG_USER_NOT_REGISTERED);}
+        else{out.write(LINE_USER_NOT_REGISTERED);}
     }
 
     /**
-     * Auxiliary method (private selector) used by processTop to traverse the (already sorted)
-     * event collection and display only those events matching the given number of participants.
+     * Auxiliary method (private selector) used by processTop to traverse the (chronological)
+     * events matching the given number of participants and display them.
      * @param num The target number of participants (usually the maximum found globally).
      * @param calendar The system object containing the event collection.
+     * @param out The output of the command.
      * @pre calendar != null
      */
-    private static void showTop(int num,Calendar calendar){
-        // Obtain a new iterator for traversal.
-        EventIterator it=calendar.iterator();
+    private static void showTop(int num,CalendarView calendar,OutputBuffer out){
+        // Obtain a new iterator over the events with the required number of users only.
+        EventIterator it=calendar.iterator(num);
 
-        // Filter: Only process events with the required number of users.
         while(it.hasNext()){
             Event j=it.next();
-            if(j.getNumUsers()==num){
-                String event=j.getName();
-                int day=j.getDay();
-                int startTime=j.getStartTime();
-                int endTime=j.getEndTime();
-                int numUsers=j.getNumUsers();
-
-                // Output is formatted according to specification
-                // (chronological order guaranteed by prior sort).
-                System.out.printf(MSG_SHOW_EVENT,event,day,startTime,endTime,numUsers);
-            }
+
+            // Output is formatted according to specification
+            // (chronological order guaranteed by the calendar iterator).
+            writeEvent(j,out);
         }
     }
 
     /**
      * Processes the 'top' command, which lists all events with the maximum number of participants.
      * Ensures output is sorted chronologically (Day, StartTime).
-     * @param calendar The system object managing events.
+     * @param calendar The events to display: the calendar itself or a snapshot of it.
+     * @param out The output of the command.
      * @pre calendar != null
      */
-    private static void processTop(Calendar calendar){
+    private static void processTop(CalendarView calendar,OutputBuffer out){
         if(calendar.getEventNumber()!=NO_EVENTS){
 
-            // Sort the global collection chronologically. This must happen before
-            // identifying the maximum and displaying the events to meet the output requirement.
-            calendar.eventSort();
-
             // Find the maximum number of participants and then display
             // all events matching that count.
-            showTop(calendar.findMaxNumberOfUsers(),calendar);
+            showTop(calendar.findMaxNumberOfUsers(),calendar,out);
+        }
+        else{out.write(LINE_NO_GLOBAL_EVENTS);}
+    }
+
+    /**
+     * Processes the 'free' command, which lists every registered user that has no event
+     * in the given time slot (one name per line, in registration order).
+     * A time slot outside the bookable week is rejected.
+     * @param command The command, whose numeric arguments are the day, start time and end time.
+     * @param calendar The system object managing events and users.
+     * @param out The output of the command.
+     * @pre command != null && calendar != null && out != null
+     */
+    private static void processFree(Command command,Calendar calendar,OutputBuffer out){
+        int day=command.getNumber(0);
+        int startTime=command.getNumber(1);
+        int endTime=command.getNumber(2);
+        if(Calendar.isValidSlot(day,startTime,endTime)){
+            String[] users=calendar.findFreeUsers(day,startTime,endTime);
+            if(users.length!=0){
+                for(int i=0;i<users.length;i++){
+                    out.write(users[i]);
+                    out.write(LINE_END);
+                }
+            }
+            else{out.write(LINE_NO_FREE_USERS);}
+        }
+        else{out.write(LINE_INVALID_SLOT);}
+    }
+
+    /**
+     * Processes the 'findslot' command, with a duration and a list of users,
+     * and displays the earliest window of that many hours, within one day,
+     * in which all of them are free.
+     * @param command The command, whose numeric argument is the duration
+     * and whose text arguments are the users.
+     * @param calendar The system object managing events and users.
+     * @param out The output of the command.
+     * @pre command != null && calendar != null && out != null
+     */
+    private static void processFindSlot(Command command,Calendar calendar,OutputBuffer out){
+        int duration=command.getNumber(0);
+        String[] eventUsers=command.getWords(0);
+        if(calendar.doesAllUserExist(eventUsers)){
+            int slot=calendar.findFreeSlot(duration,eventUsers,FIRST_SLOT);
+            if(slot!=NO_SLOT){
+                int startTime=Calendar.slotHour(slot);
+                out.write(String.format(MSG_FREE_SLOT,Calendar.slotDay(slot),startTime,startTime+duration));
+            }
+            else{out.write(LINE_NO_FREE_SLOT);}
+        }
+        else{out.write(LINE_SOME_USER_NOT_REGISTERED);}
+    }
+
+    /**
+     * Processes the 'save' command, which writes the complete state of the calendar
+     * to the file it names (see Calendar.save), so a later run can start from it
+     * with the --snapshot option. The state is preceded by a random id that tells
+     * saves apart. It is first written to a temporary file, which is forced to the
+     * disk and then replaces the named file (and the directory is forced as well),
+     * so a failed save leaves the previous one intact. Once saved, the changes in the
+     * log are part of the saved state, so the log is replaced by one that starts with
+     * a record of the save (see writeSavedRecord): a later run with the log starts
+     * from the saved calendar and carries out only the changes logged after it.
+     * Once the named file is replaced, the save cannot be undone: a later run would
+     * find the new id there and drop the records of the old log (see recoverSaved).
+     * So if the log cannot be replaced from then on, no further change may be logged
+     * to the old log, and the program stops.
+     * @param command The command, whose only text argument is the file name.
+     * @param calendar The system object managing users and events.
+     * @param log The log of changes (null if changes are not logged).
+     * @param out The output of the command.
+     * @pre command != null && calendar != null && out != null
+     * @throws UncheckedIOException If the file was replaced but the directory could
+     * not be forced to the disk or the log could not be replaced.
+     */
+    private static void processSave(Command command,Calendar calendar,MutationLog log,OutputBuffer out){
+        Path file=Path.of(command.getWord(0));
+        Path temporary=Path.of(command.getWord(0)+SAVE_SUFFIX);
+        long id=ThreadLocalRandom.current().nextLong();
+        boolean replaced=false; // true once the named file holds the new save
+        try {
+            try (FileOutputStream saved=new FileOutputStream(temporary.toFile());
+                 DataOutputStream stream=new DataOutputStream(new BufferedOutputStream(saved,SAVE_BUFFER))) {
+                stream.writeLong(id);
+                calendar.save(stream);
+                stream.flush();
+                saved.getFD().sync();
+            }
+            Files.move(temporary,file,StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.ATOMIC_MOVE);
+            replaced=true;
+        } catch (IOException e) {
+            out.write(LINE_NOT_SAVED);
+        }
+        if(replaced){
+            try {
+                MutationLog.syncDirectory(file);
+                if(log!=null){
+                    log.restart(writeSavedRecord(file,id));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            out.write(LINE_SAVED);
         }
-        else{System.out.println(MSG_NO_GLOBAL_EVENTS);}
     }
 
     /**
      * Processes the 'exit' command, terminating the application and printing the required message.
+     * @param out The output of the command.
+     */
+    private static void processExit(OutputBuffer out){
+        out.write(LINE_EXIT);
+    }
+
+    /**
+     * Processes an unknown or invalid command input
+     * (the rest of its line was already consumed when it was read).
+     * @param out The output of the command.
+     */
+    private static void showUnknownCommand(OutputBuffer out){
+        out.write(LINE_INVALID_CMD);
+    }
+
+    /**
+     * Reads the next command and its arguments from the input.
+     * Commands with participants read them across multiple lines; for an unknown
+     * command, the rest of its line is consumed to prepare for the next command read.
+     * @param input The Tokenizer reading the input stream.
+     * @return The command read.
+     * @pre input != null
+     */
+    private static Command readCommand(Tokenizer input){
+        // Reads the next token, which is expected to be the command string.
+        String name=input.next();
+        return switch (name) {
+            case CMD_CREATE, CMD_SHOW, CMD_SAVE -> new Command(name,new String[]{input.next()},NO_NUMBERS);
+            case CMD_SCHEDULE -> {
+                String event=input.next();
+                int[] numbers={input.nextInt(),input.nextInt(),input.nextInt()};
+                String[] words=new String[input.nextInt()+1];
+                words[0]=event;
+                for(int i=1;i<words.length;i++){
+                    words[i]=input.next();
+                }
+                yield new Command(name,words,numbers);
+            }
+            case CMD_CANCEL -> new Command(name,new String[]{input.next(),input.next()},NO_NUMBERS);
+            case CMD_FREE -> new Command(name,NO_WORDS,
+                    new int[]{input.nextInt(),input.nextInt(),input.nextInt()});
+            case CMD_FIND_SLOT -> {
+                int[] numbers={input.nextInt()};
+                String[] words=new String[input.nextInt()];
+                for(int i=0;i<words.length;i++){
+                    words[i]=input.next();
+                }
+                yield new Command(name,words,numbers);
+            }
+            case CMD_TOP, CMD_EXIT -> new Command(name,NO_WORDS,NO_NUMBERS);
+            default -> {
+                // Consume the rest of the line associated with the invalid command.
+                input.nextLine();
+                yield new Command(name,NO_WORDS,NO_NUMBERS);
+            }
+        };
+    }
+
+    /**
+     * Writes a change accepted by the calendar ('create', 'schedule' or 'cancel') as a
+     * record of the log: the command as readCommand reads it, on a single line.
+     * @param command The command.
+     * @return The record.
+     * @pre command != null
+     */
+    private static OutputBuffer writeRecord(Command command){
+        OutputBuffer record=new OutputBuffer();
+        record.write(command.getName());
+        int first=0;
+        if(command.getName().equals(CMD_SCHEDULE)){
+            // The event, the day and hours, and the number of participants come first.
+            record.write(RECORD_SEPARATOR);
+            record.write(command.getWord(0));
+            for(int i=0;i<3;i++){
+                record.write(RECORD_SEPARATOR);
+                record.write(command.getNumber(i));
+            }
+            record.write(RECORD_SEPARATOR);
+            record.write(command.getNumWords()-1);
+            first=1;
+        }
+        for(int i=first;i<command.getNumWords();i++){
+            record.write(RECORD_SEPARATOR);
+            record.write(command.getWord(i));
+        }
+        record.write(RECORD_END);
+        return record;
+    }
+
+    /**
+     * Writes the record a log starts with once the calendar has been saved: the name
+     * RECORD_SAVED and the id of the saved calendar, and the absolute path of the
+     * saved calendar on the rest of the line (so it may hold spaces).
+     * @param file The path of the saved calendar.
+     * @param id The id of the saved calendar.
+     * @return The record.
+     * @pre file != null
      */
-    private static void processExit(){
-        System.out.println(MSG_EXIT);
+    private static OutputBuffer writeSavedRecord(Path file,long id){
+        OutputBuffer record=new OutputBuffer();
+        record.write(RECORD_SAVED);
+        record.write(RECORD_SEPARATOR);
+        record.write(Long.toString(id));
+        record.write(RECORD_SEPARATOR);
+        record.write(file.toAbsolutePath().toString());
+        record.write(RECORD_END);
+        return record;
     }
 
     /**
-     * Processes an unknown or invalid command input.
-     * It consumes the remaining input on the line and outputs the invalid command message.
-     * @param scanner Scanner object for reading input.
-     * @pre scanner != null
+     * Reads the record written by writeSavedRecord, if a log starts with one.
+     * The tokenizer is left after the record if there is one, and somewhere within
+     * the first record otherwise.
+     * @param records The tokenizer of the log, at its start.
+     * @return The id and the path of the saved calendar, in that order,
+     * or null if the log does not start with such a record.
+     * @pre records != null
      */
-    private static void showUnknownCommand(Scanner scanner){
-        // Consume the rest of the line associated with the invalid command
-        // to prepare for the next command read.
-        scanner.nextLine();
-        System.out.println(MSG_INVALID_CMD);
+    private static String[] readSavedRecord(Tokenizer records){
+        String[] saved=null;
+        try {
+            if(records.next().equals(RECORD_SAVED)){
+                String id=records.next();
+                // The rest of the line, after the separator, is the path.
+                saved=new String[]{id,records.nextLine().substring(1)};
+            }
+        } catch (NoSuchElementException e) {
+            // An empty log.
+        }
+        return saved;
+    }
+
+    /**
+     * Auxiliary method that loads the calendar a log starts from, when the log
+     * starts with the record of a save (see processSave). If the calendar saved at
+     * that path has another id, it was saved again and the program stopped before
+     * the log was replaced: that calendar already holds every change of the log,
+     * so the log is replaced now by a record of that save.
+     * @param filename The name of the log file.
+     * @return The saved calendar, or null if the log is missing or does not start
+     * with the record of a save.
+     * @pre filename != null
+     * @throws IOException If the log or the saved calendar cannot be read, or the log cannot be replaced.
+     */
+    private static Calendar recoverSaved(String filename)throws IOException{
+        Path file=Path.of(filename);
+        if(!Files.exists(file)){
+            return null;
+        }
+        String[] saved;
+        try (FileChannel channel=FileChannel.open(file,StandardOpenOption.READ)) {
+            saved=readSavedRecord(new Tokenizer(channel));
+        }
+        if(saved==null){
+            return null;
+        }
+        long id=readSavedId(saved[1]);
+        if(id!=Long.parseLong(saved[0])){
+            MutationLog log=new MutationLog(file);
+            try {
+                log.restart(writeSavedRecord(Path.of(saved[1]),id));
+            } finally {
+                log.close();
+            }
+        }
+        return loadCalendar(saved[1]);
+    }
+
+    /**
+     * Auxiliary method that carries out again the changes recorded in a log file,
+     * in order, discarding their output. The record of a save the log may start with
+     * is skipped (the calendar given is the saved one, see recoverSaved). A record
+     * that a crash cut short (the last one, without the end of its line) is removed
+     * from the file, so new records are appended after the last complete one.
+     * A missing file holds no changes.
+     * @param filename The name of the log file.
+     * @param calendar The system class responsible for managing events and users.
+     * @pre filename != null && calendar != null
+     * @throws IOException If the log file cannot be read or truncated.
+     */
+    private static void replayLog(String filename,Calendar calendar)throws IOException{
+        Path file=Path.of(filename);
+        if(!Files.exists(file)){
+            return;
+        }
+        try (FileChannel channel=FileChannel.open(file,StandardOpenOption.READ,StandardOpenOption.WRITE)) {
+            Tokenizer records=new Tokenizer(channel);
+            long end=0; // Offset after the last complete record
+            if(readSavedRecord(records)!=null){
+                end=records.getOffset();
+            }
+            else{
+                records=new Tokenizer(channel);
+            }
+            try {
+                while(true){
+                    Command command=readCommand(records);
+                    // Consumes the end of the record, which a record cut short lacks.
+                    records.nextLine();
+                    OutputBuffer ignored=new OutputBuffer();
+                    switch (command.getName()) {
+                        case CMD_CREATE -> processCreate(command, calendar, ignored);
+                        case CMD_SCHEDULE -> processSchedule(command, calendar, false, ignored);
+                        case CMD_CANCEL -> processCancel(command, calendar, ignored);
+                        default -> throw new IOException("Not a log record: "+command.getName());
+                    }
+                    end=records.getOffset();
+                }
+            } catch (NoSuchElementException e) {
+                // The end of the log, or of its last complete record.
+            }
+            channel.truncate(end);
+        }
     }
 
     /**
      * Executes the main command interpreter loop, reading commands from the input
-     * source (standard input or file after initialization) and delegating execution
-     * to the appropriate processing methods until the exit command is received.
-     * @param scanner The Scanner object reading the input stream (System.in).
+     * source (standard input or file after initialization) and carrying them out
+     * until the exit command is received.
+     * The work is split into a pipeline of three stages, connected by bounded queues:
+     * a tokenizer thread reads and parses the commands (readCommands), a single writer
+     * thread carries them out in input order (applyCommands), and the calling thread
+     * prints their outputs in the same order (printOutputs). The writer hands 'show'
+     * and 'top' to a pool of reader threads together with a snapshot of the calendar,
+     * so they are formatted while the writer goes on with the next commands.
+     * If the input ends before the exit command, or a stage fails (with an exception
+     * or an error such as running out of memory), the outputs of the commands carried
+     * out are printed and the first failure is thrown.
+     * When changes are logged, the writer appends a record for every command that
+     * changed the calendar, and the printing stage syncs the log before printing,
+     * so no change is reported before it is durable.
+     * @param input The Tokenizer reading the input stream (System.in).
+     * @param calendar The system class responsible for managing events and users.
+     * @param verbose true to display diagnostics in addition to the normal output.
+     * @param log The log of changes (null if changes are not logged).
+     * @param sink The buffer of the standard output.
+     * @param interactive true to flush the output after every command.
+     * @pre input != null && calendar != null && sink != null
+     */
+    private static void executeOperations(Tokenizer input, Calendar calendar, boolean verbose,
+            MutationLog log, OutputBuffer sink, boolean interactive){
+        BlockingQueue<Command> commands=new ArrayBlockingQueue<>(PIPELINE_DEPTH);
+        BlockingQueue<Future<OutputBuffer>> outputs=new ArrayBlockingQueue<>(PIPELINE_DEPTH);
+        AtomicReference<Throwable> failure=new AtomicReference<>();
+        ExecutorService readers=Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        Thread tokenizer=new Thread(() -> readCommands(input,commands,failure));
+        Thread writer=new Thread(() -> applyCommands(commands,outputs,calendar,verbose,log,readers,failure));
+        tokenizer.setDaemon(true);
+        writer.setDaemon(true);
+        tokenizer.start();
+        writer.start();
+        try {
+            printOutputs(outputs,log,sink,interactive);
+        } finally {
+            readers.shutdown();
+        }
+        Throwable error=failure.get();
+        if(error instanceof Error){
+            throw (Error)error;
+        }
+        if(error!=null){
+            throw (RuntimeException)error;
+        }
+    }
+
+    /**
+     * Auxiliary method (tokenizer stage) that reads commands until the exit command
+     * and hands them to the writer in input order. If the input ends (or cannot be
+     * parsed, or reading fails) first, the error is recorded and the END_OF_INPUT
+     * command is handed over, so the other stages always come to an end.
+     * @param input The Tokenizer reading the input stream.
+     * @param commands The queue of commands read.
+     * @param failure Where the error of a stage is recorded.
+     */
+    private static void readCommands(Tokenizer input,BlockingQueue<Command> commands,
+            AtomicReference<Throwable> failure){
+        try {
+            Command command;
+            do {
+                try {
+                    command=readCommand(input);
+                } catch (RuntimeException | Error e) {
+                    // NoSuchElementException at the end of the input, or any other failure.
+                    failure.compareAndSet(null,e);
+                    command=new Command(END_OF_INPUT,NO_WORDS,NO_NUMBERS);
+                }
+                commands.put(command);
+            } while (!command.getName().equals(CMD_EXIT)&&!command.getName().equals(END_OF_INPUT));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Auxiliary method (writer stage) that carries out the commands in input order
+     * and hands their outputs to the printing stage in the same order.
+     * Commands that change the calendar, and those that read its occupancy
+     * ('free' and 'findslot'), are carried out here; 'show' and 'top' are given to a
+     * reader thread with a snapshot of the calendar taken at this point of the input,
+     * so their output is the same as if they had been carried out here.
+     * A command that changed the calendar (its version moved) is appended to the log
+     * before its output is handed over.
+     * If a command fails, with an exception or an error, the failure is recorded and
+     * the end of the outputs is still handed over, so the printing stage does not wait forever.
+     * @param commands The queue of commands read.
+     * @param outputs The queue of outputs, in input order.
      * @param calendar The system class responsible for managing events and users.
-     * @pre scanner != null && calendar != null
+     * @param verbose true to display diagnostics in addition to the normal output.
+     * @param log The log of changes (null if changes are not logged).
+     * @param readers The pool of reader threads.
+     * @param failure Where the error of a stage is recorded.
+     */
+    private static void applyCommands(BlockingQueue<Command> commands,BlockingQueue<Future<OutputBuffer>> outputs,
+            Calendar calendar,boolean verbose,MutationLog log,ExecutorService readers,
+            AtomicReference<Throwable> failure){
+        try {
+            try {
+                Command command;
+                do {
+                    command=commands.take();
+                    Command current=command;
+                    OutputBuffer out=new OutputBuffer();
+                    long version=calendar.getVersion();
+                    // Uses a switch statement to dispatch commands to auxiliary methods.
+                    switch (command.getName()) {
+                        case CMD_CREATE -> processCreate(command, calendar, out);
+                        case CMD_SCHEDULE -> processSchedule(command, calendar, verbose, out);
+                        case CMD_CANCEL -> processCancel(command, calendar, out);
+                        case CMD_SHOW -> {
+                            CalendarSnapshot snapshot=calendar.snapshot();
+                            outputs.put(readers.submit(() -> {
+                                OutputBuffer shown=new OutputBuffer();
+                                processShow(current, snapshot, shown);
+                                return shown;
+                            }));
+                            out=null;
+                        }
+                        case CMD_TOP -> {
+                            CalendarSnapshot snapshot=calendar.topSnapshot();
+                            outputs.put(readers.submit(() -> {
+                                OutputBuffer shown=new OutputBuffer();
+                                processTop(snapshot, shown);
+                                return shown;
+                            }));
+                            out=null;
+                        }
+                        case CMD_FREE -> processFree(command, calendar, out);
+                        case CMD_FIND_SLOT -> processFindSlot(command, calendar, out);
+                        case CMD_SAVE -> processSave(command, calendar, log, out);
+                        case CMD_EXIT -> processExit(out);
+                        case END_OF_INPUT -> out=null;
+                        default -> showUnknownCommand(out);
+                    }
+                    if(log!=null&&calendar.getVersion()!=version){
+                        log.append(writeRecord(command));
+                    }
+                    if(out!=null){
+                        outputs.put(CompletableFuture.completedFuture(out));
+                    }
+                } while (!command.getName().equals(CMD_EXIT)&&!command.getName().equals(END_OF_INPUT));
+            } catch (RuntimeException | Error e) {
+                failure.compareAndSet(null,e);
+            }
+            outputs.put(END_OF_OUTPUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Auxiliary method (printing stage) that copies the outputs of the commands
+     * to the standard output buffer in input order, waiting for each one to be ready,
+     * until the end of the outputs. In interactive mode the buffer is flushed after
+     * every command, so each answer appears before the next command is typed.
+     * When changes are logged, the log is synced before an output is printed: one sync
+     * makes durable the records of every command the writer has carried out so far,
+     * including the ones whose outputs are still waiting (group commit).
+     * @param outputs The queue of outputs, in input order.
+     * @param log The log of changes (null if changes are not logged).
+     * @param sink The buffer of the standard output.
+     * @param interactive true to flush the output after every command.
      */
-    private static void executeOperations(Scanner scanner, Calendar calendar){
-        String command;
-        do {
-            // Reads the next token, which is expected to be the command string.
-            command = scanner.next();
-
-            // Uses a switch statement to dispatch commands to auxiliary methods.
-            switch (command) {
-                case CMD_CREATE -> processCreate(scanner, calendar);
-                case CMD_SCHEDULE -> processSchedule(scanner, calendar);
-                case CMD_CANCEL -> processCancel(scanner, calendar);
-                case CMD_SHOW -> processShow(scanner, calendar);
-                case CMD_TOP -> processTop(calendar);
-                case CMD_EXIT -> processExit();
-                default -> showUnknownCommand(scanner);
+    private static void printOutputs(BlockingQueue<Future<OutputBuffer>> outputs,MutationLog log,
+            OutputBuffer sink,boolean interactive){
+        try {
+            Future<OutputBuffer> output=outputs.take();
+            while (output!=END_OF_OUTPUT) {
+                if(log!=null){
+                    log.sync();
+                }
+                sink.write(output.get());
+                if(interactive){
+                    sink.flush();
+                }
+                output=outputs.take();
             }
-        } while (!command.equals(CMD_EXIT));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
     }
 
     /**
-     * Reads the initial list of users from the configuration file (via the provided Scanner)
+     * Reads the initial list of users from the configuration file (via the provided Tokenizer)
      * and registers them in the system.
      * Assumes the file structure follows the specified format (number of users followed by names).
-     * @param file The Scanner object linked to the input file stream.
+     * @param file The Tokenizer linked to the input file stream.
      * @param calendar The system object managing user registration.
      * @pre file != null && calendar != null
      */
-    private static void fileUser(Scanner file,Calendar calendar){
-        // Reads the number of users to follow
+    private static void fileUser(Tokenizer file,Calendar calendar){
+        // Reads the number of users to follow, and makes room for all of them at once.
         int num=file.nextInt();
+        calendar.ensureUserCapacity(num);
         for(int i=0;i<num;i++){
 
             // Adds each user to the calendar system
@@ -291,64 +855,157 @@ public class Main {
     }
 
     /**
-     * Reads the initial list of events from the configuration file (via the provided Scanner)
-     * and adds them to the calendar system.
+     * Reads the initial list of events from the configuration file (via the provided Tokenizer)
+     * and adds them to the calendar system in a single batch.
+     * With several processors, the records are split into chunks and parsed in parallel
+     * (see SeedEventParser); with a single one, they are parsed in a single sequential pass.
+     * They are then added in file order, as if they had been read one by one.
      * Assumes the file content respects all domain constraints (e.g., non-conflicting schedules).
-     * @param file The Scanner object linked to the input file stream.
+     * @param file The Tokenizer linked to the input file stream.
+     * @param channel The channel of the input file, read again by the parsing tasks.
      * @param calendar The system object managing events.
-     * @pre file != null && calendar != null
+     * @pre file != null && channel != null && calendar != null
      */
-    private static void fileAddEvents(Scanner file,Calendar calendar){
+    private static void fileAddEvents(Tokenizer file,FileChannel channel,Calendar calendar){
         // Reads the number of events to follow
         int num=file.nextInt();
-        for(int i=0;i<num;i++){
-            // 1. Read event basic details
-            String event= file.next();
-            int day=file.nextInt();
-            int startTime=file.nextInt();
-            int endTime=file.nextInt();
-            // 2. Read participant count and names
-            String[] eventUsers= new String[file.nextInt()];
-            for(int j=0;j<eventUsers.length;j++){
-                eventUsers[j]=file.next();
-            }
-            // 3. Add event to the collection (bypassing the complex conflict checks,
-            // as data from the initial file is typically assumed valid).
-            calendar.addEvent(event,day,startTime,endTime,eventUsers);
-
+        String[] events=new String[num];
+        int[] days=new int[num];
+        int[] startTimes=new int[num];
+        int[] endTimes=new int[num];
+        String[][] eventUsers=new String[num][];
+        if(Runtime.getRuntime().availableProcessors()>1){
+            // 1. Find where each chunk of records starts (the participant counts give their lengths)
+            long[] starts=SeedEventParser.findChunks(file,num);
+            // 2. Parse the chunks in parallel, each record into its position in the arrays
+            ForkJoinPool.commonPool().invoke(new SeedEventParser(channel,starts,file.getOffset(),0,starts.length,
+                    events,days,startTimes,endTimes,eventUsers));
         }
+        else{
+            // A single processor would only pay for the extra pass that finds the chunks.
+            SeedEventParser.parse(file,events,days,startTimes,endTimes,eventUsers);
+        }
+        // 3. Add the events to the collection (bypassing the complex conflict checks,
+        // as data from the initial file is typically assumed valid).
+        // The batch reserves space for all of them at once.
+        calendar.addEvents(events,days,startTimes,endTimes,eventUsers);
     }
 
     /**
      * Auxiliary method to read initial user and event data from a configuration file.
-     * This method reads the file name from the standard input (Scanner scanner),
-     * opens a stream to the file, and delegates the population of users and events
+     * This method reads the file name from the standard input (Tokenizer input),
+     * maps the file into memory, and delegates the population of users and events
      * to auxiliary file methods. It explicitly declares {@code throws FileNotFoundException}
      * to delegate the exception handling to the caller, as recommended for methods
      * outside the main application entry point that handle file access.
-     * @param scanner The Scanner used to read the file name from the console/input stream.
+     * @param input The Tokenizer used to read the file name from the console/input stream.
      * @param calendar The system object (Calendar class) to store the data.
-     * @pre scanner != null && calendar != null
+     * @pre input != null && calendar != null
      * @throws FileNotFoundException If the file specified by filename
      * does not exist or is inaccessible.
      */
-    private static void readFile(Scanner scanner, Calendar calendar)throws FileNotFoundException{
+    private static void readFile(Tokenizer input, Calendar calendar)throws FileNotFoundException{
         // Reads the file name from the standard input stream.
-        String filename=scanner.nextLine();
-        // Creates a new Scanner linked to the FileReader, which can throw FileNotFoundException.
-        Scanner fileStream=new Scanner(new FileReader(filename));
+        String filename=input.nextLine();
+        // Maps the file into memory and parses it in place; opening it can throw FileNotFoundException.
+        FileChannel channel=new FileInputStream(filename).getChannel();
+        Tokenizer fileStream=new Tokenizer(channel);
         // Delegates the reading of initial users from the file stream.
         fileUser(fileStream,calendar);
         // Delegates the reading of initial events from the file stream.
-        fileAddEvents(fileStream,calendar);
+        fileAddEvents(fileStream,channel,calendar);
         fileStream.close();
     }
 
-    public static void main(String[] args)throws FileNotFoundException{
-        Scanner reader = new Scanner(System.in);
-        Calendar calendar = new Calendar();
-        readFile(reader,calendar);
-        executeOperations(reader, calendar);
+    /**
+     * Auxiliary method to read a calendar saved by the 'save' command, instead of
+     * reading the initial file: the users, events and indexes are read as they
+     * were saved (see Calendar.load), with no text to parse.
+     * @param filename The name of the saved calendar.
+     * @return The calendar read.
+     * @pre filename != null
+     * @throws IOException If the file does not exist or does not hold a saved calendar.
+     */
+    private static Calendar loadCalendar(String filename)throws IOException{
+        try (DataInputStream stream=new DataInputStream(
+                new BufferedInputStream(new FileInputStream(filename),SAVE_BUFFER))) {
+            stream.readLong(); // The id of the save
+            return Calendar.load(stream);
+        }
+    }
+
+    /**
+     * Auxiliary method that reads the id a calendar was saved with (see processSave).
+     * @param filename The name of the saved calendar.
+     * @return The id.
+     * @pre filename != null
+     * @throws IOException If the file does not exist or is too short.
+     */
+    private static long readSavedId(String filename)throws IOException{
+        try (DataInputStream stream=new DataInputStream(new FileInputStream(filename))) {
+            return stream.readLong();
+        }
+    }
+
+    /**
+     * Application entry point. The supported options are --verbose, which adds
+     * diagnostics to the output (without it the output is unchanged), and
+     * --snapshot followed by a file name, which starts from a calendar saved by
+     * the 'save' command: the name of the initial file is still read from the input,
+     * so the input keeps its format, but that file is not read. With --log followed by
+     * a file name, every accepted change is logged to that file, and the changes already
+     * in it are carried out again at startup. A save replaces the log by one that starts
+     * from the saved calendar, which later runs with that log then load instead of the
+     * initial file or the --snapshot option. So a run with the same options after a crash
+     * recovers every change reported before it: the initial file or the --snapshot
+     * calendar, or the calendar of the last save, plus the changes logged after it.
+     * The output is buffered and written out when the buffer fills up and at the end,
+     * even if the program stops with an error; when it runs on a console, the output
+     * of every command is written out at once.
+     * @param args The command line options.
+     * @throws IOException If the initial file or the saved calendar cannot be read.
+     */
+    public static void main(String[] args)throws IOException{
+        boolean verbose=false;
+        String snapshotFile=null;
+        String logFile=null;
+        for(int i=0;i<args.length;i++){
+            if(args[i].equals(OPT_VERBOSE)){
+                verbose=true;
+            }
+            else if(args[i].equals(OPT_SNAPSHOT)&&i+1<args.length){
+                snapshotFile=args[++i];
+            }
+            else if(args[i].equals(OPT_LOG)&&i+1<args.length){
+                logFile=args[++i];
+            }
+        }
+        OutputBuffer sink = new OutputBuffer(new FileOutputStream(FileDescriptor.out),OUTPUT_THRESHOLD);
+        Tokenizer reader = new Tokenizer(System.in);
+        Calendar calendar;
+        MutationLog log=null;
+        try {
+            Calendar saved=logFile!=null?recoverSaved(logFile):null;
+            if(saved!=null||snapshotFile!=null){
+                // Skips the name of the initial file, which the saved calendar replaces.
+                reader.nextLine();
+                calendar=saved!=null?saved:loadCalendar(snapshotFile);
+            }
+            else{
+                calendar=new Calendar();
+                readFile(reader,calendar);
+            }
+            if(logFile!=null){
+                replayLog(logFile,calendar);
+                log=new MutationLog(Path.of(logFile));
+            }
+            executeOperations(reader, calendar, verbose, log, sink, System.console()!=null);
+        } finally {
+            if(log!=null){
+                log.close();
+            }
+            sink.flush();
+        }
         reader.close();
     }
 }
\ No newline at end of file
@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An append-only log of the changes accepted by the calendar, kept in a file so
+ * they survive a crash. Each change is appended as a record (see Main, where
+ * records are written and replayed), first to a buffer in memory; sync then
+ * writes every record appended so far and forces them to the disk with a single
+ * fsync (group commit), while further records keep being appended meanwhile.
+ * A change must only be reported once sync has returned after its record was appended.
+ * The methods may be called from different threads: records are appended by
+ * the thread that changes the calendar and synced by the one that prints.
+ * Once the calendar is saved, the log is replaced by one that starts from the saved
+ * calendar (see restart).
+ */
+public class MutationLog {
+
+    private static final int WRITE_THRESHOLD = 1 << 16; // Bytes written to the file at a time
+    private static final String RESTART_SUFFIX = ".tmp"; // Suffix of the new log, before it replaces the log
+
+    private final Path path;      // The path of the log file
+    private FileChannel channel;  // The log file, opened for appending
+    private OutputBuffer file;    // Buffer of the writes to the file
+    private OutputBuffer pending; // Records appended and not synced yet
+    private int numPending;       // Number of those records
+    private final Object fileLock = new Object(); // Held while the file is written or truncated
+
+    /**
+     * Constructor: Opens a log file for appending, creating it if it does not exist.
+     * The records already in the file are kept.
+     * @param path The path of the log file.
+     * @throws IOException If the file cannot be opened.
+     * @pre path != null
+     */
+    public MutationLog(Path path) throws IOException {
+        this.path = path;
+        open();
+        pending = new OutputBuffer();
+        numPending = 0;
+    }
+
+    /**
+     * Auxiliary method (private mutator) that opens the log file for appending.
+     * @throws IOException If the file cannot be opened.
+     */
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        file = new OutputBuffer(Channels.newOutputStream(channel), WRITE_THRESHOLD);
+    }
+
+    /**
+     * Appends a record to the log. The record is durable after the next sync.
+     * @param record The bytes of the record, which is left unchanged.
+     * @pre record != null
+     */
+    public synchronized void append(OutputBuffer record) {
+        pending.write(record);
+        numPending++;
+    }
+
+    /**
+     * Writes every record appended so far to the file and forces it to the disk.
+     * The records appended while this happens are left for the next sync.
+     * Nothing is done if no record is pending.
+     * @throws UncheckedIOException If the file cannot be written.
+     */
+    public void sync() {
+        synchronized (fileLock) {
+            OutputBuffer batch;
+            synchronized (this) {
+                if (numPending == 0) {
+                    return;
+                }
+                batch = pending;
+                pending = new OutputBuffer();
+                numPending = 0;
+            }
+            file.write(batch);
+            file.flush();
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Replaces the log by a new one that holds a single record, dropping the records
+     * appended so far, synced or not. Used once the state of the calendar has been
+     * saved, since the saved state already holds those changes: the record tells
+     * where it was saved. The new log is written to a temporary file, forced to the
+     * disk and renamed over the log, so a crash leaves either the old log or the new
+     * one; the records are only dropped once the new log is durable.
+     * @param first The bytes of the record of the new log.
+     * @throws IOException If the new log cannot be written or put in place. If this
+     * happens before the rename, the log and its records are left as they were.
+     * @pre first != null and no record is being appended meanwhile
+     */
+    public void restart(OutputBuffer first) throws IOException {
+        synchronized (fileLock) {
+            Path temporary = path.resolveSibling(path.getFileName() + RESTART_SUFFIX);
+            try (FileChannel fresh = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                OutputBuffer buffer = new OutputBuffer(Channels.newOutputStream(fresh), WRITE_THRESHOLD);
+                buffer.write(first);
+                buffer.flush();
+                fresh.force(true);
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(path);
+            synchronized (this) {
+                pending = new OutputBuffer();
+                numPending = 0;
+            }
+            channel.close();
+            open();
+        }
+    }
+
+    /**
+     * Forces to the disk the directory that holds a file, so that a file just created
+     * or renamed there is still found under its name after a crash. Where a directory
+     * cannot be opened for reading (as on Windows), nothing is done.
+     * @param file The path of the file.
+     * @throws IOException If the directory is opened but cannot be forced to the disk.
+     * @pre file != null
+     */
+    public static void syncDirectory(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Syncs the pending records and closes the file.
+     * @throws UncheckedIOException If the file cannot be written or closed.
+     */
+    public void close() {
+        sync();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Hash index from names (Strings) to integer values, used by the Calendar
+ * to find the position of an element by its name without a linear search.
+ * It uses open addressing with linear probing: keys and values are stored in
+ * two parallel arrays whose capacity is always a power of two, and the table
+ * doubles its capacity whenever it becomes half full.
+ */
+public class NameIndex {
+
+    // Constants
+    public static final int NOT_FOUND = -1; // Value returned when a name is not indexed
+    private static final int INITIAL_CAPACITY = 16; // Initial number of table positions
+
+    private String[] keys; // Indexed names (null marks a free position)
+    private int[] values;  // Value associated with the name in the same position
+    private int size;      // Number of names currently indexed
+
+    /**
+     * Constructor: Initializes an empty index.
+     */
+    public NameIndex() {
+        keys = new String[INITIAL_CAPACITY];
+        values = new int[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Returns the number of names currently indexed.
+     * @return The number of names.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Creates a view of the index that shares its arrays, in O(1).
+     * Adding a new name only fills a free position, and growing moves the index to new
+     * arrays, so every name indexed when the view was created stays where the view
+     * finds it. The view may also find names added afterwards (even while they are
+     * being added, from another thread); callers that need the index as it was must
+     * check the values it returns. The view is read-only, and it must not be used
+     * after a name is removed from the index or its value replaced.
+     * @return A new index sharing the arrays of this one.
+     */
+    public NameIndex view() {
+        NameIndex index = new NameIndex();
+        index.keys = keys;
+        index.values = values;
+        index.size = size;
+        return index;
+    }
+
+    /**
+     * Auxiliary method (private selector) that computes the home position of a name.
+     * The hash code is spread so that the low bits used by the mask also depend
+     * on the high bits of the hash.
+     * @param name The name to place.
+     * @return A position in [0, keys.length).
+     * @pre name != null
+     */
+    private int home(String name) {
+        int h = name.hashCode();
+        return (h ^ (h >>> 16)) & (keys.length - 1);
+    }
+
+    /**
+     * Auxiliary method (private selector) that probes the table for a name.
+     * @param name The name to search for.
+     * @return The position holding the name, or the free position where the
+     * probe sequence stopped if the name is not indexed.
+     * @pre name != null
+     */
+    private int probe(String name) {
+        int i = home(name);
+        while (keys[i] != null && !keys[i].equals(name)) {
+            i = (i + 1) & (keys.length - 1);
+        }
+        return i;
+    }
+
+    /**
+     * Returns the value associated with a name.
+     * @param name The name to search for.
+     * @return The associated value, or NOT_FOUND if the name is not indexed.
+     * @pre name != null
+     */
+    public int get(String name) {
+        int i = probe(name);
+        return keys[i] == null ? NOT_FOUND : values[i];
+    }
+
+    /**
+     * Associates a value with a name, replacing the previous value
+     * if the name is already indexed.
+     * @param name The name to index.
+     * @param value The value to associate (must not be NOT_FOUND).
+     * @pre name != null && value >= 0
+     */
+    public void put(String name, int value) {
+        int i = probe(name);
+        if (keys[i] == null) {
+            keys[i] = name;
+            size++;
+        }
+        values[i] = value;
+        if (2 * size > keys.length) {
+            grow();
+        }
+    }
+
+    /**
+     * Removes a name from the index. The entries that follow it in the same
+     * probe run are shifted back, so no deleted markers are left behind
+     * and lookups stay as short as after an insertion.
+     * @param name The name to remove.
+     * @pre name != null
+     */
+    public void remove(String name) {
+        int free = probe(name);
+        if (keys[free] != null) {
+            int mask = keys.length - 1;
+            int i = (free + 1) & mask;
+            while (keys[i] != null) {
+                int h = home(keys[i]);
+                // The entry can fill the hole if its home position is not
+                // cyclically between the hole (exclusive) and itself (inclusive).
+                if (((i - h) & mask) >= ((i - free) & mask)) {
+                    keys[free] = keys[i];
+                    values[free] = values[i];
+                    free = i;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[free] = null;
+            size--;
+        }
+    }
+
+    /**
+     * Makes sure the index can hold a given number of names without growing again,
+     * by enlarging the table at once (used before bulk loads of known size).
+     * @param capacity The number of names the index must be able to hold.
+     * @pre capacity >= 0
+     */
+    public void ensureCapacity(int capacity) {
+        int length = keys.length;
+        while (2 * capacity > length) {
+            length *= 2;
+        }
+        if (length > keys.length) {
+            rehash(length);
+        }
+    }
+
+    /**
+     * Auxiliary method (private mutator) that doubles the capacity of the table
+     * and re-inserts every indexed name.
+     */
+    private void grow() {
+        rehash(keys.length * 2);
+    }
+
+    /**
+     * Auxiliary method (private mutator) that moves the names to a table of the
+     * given capacity, re-inserting every indexed name.
+     * @param capacity The new number of table positions (a power of two).
+     * @pre capacity > 2 * size()
+     */
+    private void rehash(int capacity) {
+        String[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new String[capacity];
+        values = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int j = probe(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A growable buffer of output bytes, used instead of System.out.println and printf.
+ * Fixed messages are written as bytes encoded once (see encode), integers are
+ * formatted digit by digit, and text is encoded as UTF-8 (ASCII text directly).
+ * A buffer may be attached to a stream: the bytes are then written to the stream
+ * when flush is called, or as soon as the buffer holds a given number of bytes,
+ * so the stream receives few large writes instead of one per line.
+ * A buffer without a stream just keeps its bytes, for example the output of one
+ * command until it can be printed in order.
+ */
+public class OutputBuffer {
+
+    private static final int INITIAL_CAPACITY = 64; // Initial length of an in-memory buffer
+
+    private OutputStream out; // Stream the bytes are flushed to (null if none)
+    private int threshold;    // Number of bytes that makes the buffer flush itself
+    private byte[] bytes;     // Bytes not flushed yet
+    private int size;         // Number of valid bytes in the array
+
+    /**
+     * Constructor: Initializes an empty buffer that is not attached to a stream.
+     */
+    public OutputBuffer() {
+        out = null;
+        threshold = Integer.MAX_VALUE;
+        bytes = new byte[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Constructor: Initializes an empty buffer attached to a stream.
+     * @param out The stream the bytes are written to.
+     * @param threshold The number of bytes after which the buffer is flushed.
+     * @pre out != null && threshold > 0
+     */
+    public OutputBuffer(OutputStream out, int threshold) {
+        this.out = out;
+        this.threshold = threshold;
+        bytes = new byte[threshold];
+        size = 0;
+    }
+
+    /**
+     * Encodes a fixed message once, so it can be written without encoding it again.
+     * @param message The message.
+     * @return The UTF-8 bytes of the message.
+     * @pre message != null
+     */
+    public static byte[] encode(String message) {
+        return message.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Auxiliary method (private mutator) that makes room for more bytes,
+     * at least doubling the array when it is full.
+     * @param extra The number of bytes about to be written.
+     */
+    private void reserve(int extra) {
+        if (size + extra > bytes.length) {
+            byte[] temporary = new byte[Math.max(size + extra, bytes.length * 2)];
+            System.arraycopy(bytes, 0, temporary, 0, size);
+            bytes = temporary;
+        }
+    }
+
+    /**
+     * Auxiliary method (private mutator) that flushes the buffer if it reached its threshold.
+     */
+    private void checkThreshold() {
+        if (size >= threshold) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes bytes (typically a message encoded with encode).
+     * @param message The bytes to write.
+     * @pre message != null
+     */
+    public void write(byte[] message) {
+        reserve(message.length);
+        System.arraycopy(message, 0, bytes, size, message.length);
+        size += message.length;
+        checkThreshold();
+    }
+
+    /**
+     * Writes the bytes held by another buffer, which is left unchanged.
+     * @param other The buffer to copy.
+     * @pre other != null
+     */
+    public void write(OutputBuffer other) {
+        reserve(other.size);
+        System.arraycopy(other.bytes, 0, bytes, size, other.size);
+        size += other.size;
+        checkThreshold();
+    }
+
+    /**
+     * Writes a text in UTF-8. Text made only of ASCII characters (such as the
+     * names of users and events) is copied character by character.
+     * @param text The text.
+     * @pre text != null
+     */
+    public void write(String text) {
+        int length = text.length();
+        reserve(length);
+        int i = 0;
+        while (i < length && text.charAt(i) < 0x80) {
+            bytes[size + i] = (byte) text.charAt(i);
+            i++;
+        }
+        if (i == length) {
+            size += length;
+            checkThreshold();
+        } else {
+            write(encode(text));
+        }
+    }
+
+    /**
+     * Writes an integer in decimal, as "%d" formats it, without creating a String.
+     * @param value The integer.
+     */
+    public void write(int value) {
+        reserve(11); // Sign and ten digits
+        long rest = value;
+        if (rest < 0) {
+            bytes[size++] = '-';
+            rest = -rest;
+        }
+        int digits = 1;
+        for (long power = 10; power <= rest; power *= 10) {
+            digits++;
+        }
+        for (int i = size + digits - 1; i >= size; i--) {
+            bytes[i] = (byte) ('0' + rest % 10);
+            rest /= 10;
+        }
+        size += digits;
+        checkThreshold();
+    }
+
+    /**
+     * Writes the bytes held so far to the stream and empties the buffer.
+     * A buffer that is not attached to a stream is left unchanged.
+     * @throws UncheckedIOException If the stream cannot be written.
+     */
+    public void flush() {
+        if (out != null) {
+            try {
+                out.write(bytes, 0, size);
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * Outcome of an attempt to schedule an event (see Calendar.trySchedule).
+ * The constants are listed in the priority order of the checks: when several
+ * constraints are violated, the first one in this list (after SCHEDULED) is reported.
+ */
+public enum ScheduleResult {
+    SCHEDULED,                // The event was created
+    SOME_USER_NOT_REGISTERED, // At least one participant is not registered
+    EVENT_ALREADY_EXISTS,     // There is already an event with the same name
+    PROPOSER_NOT_AVAILABLE,   // The proponent has another event in the slot
+    SOME_USER_NOT_AVAILABLE   // At least one other participant has another event in the slot
+}
@@ -0,0 +1,162 @@
+import java.nio.channels.FileChannel;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parses the events section of the initial file in parallel.
+ * The section is first split into chunks of consecutive records by a light pass that
+ * only skips tokens (see findChunks): the participant count of a record is the only
+ * thing that tells where the next one starts. The chunks are then parsed by fork-join
+ * tasks, each with its own Tokenizer that maps only the bytes of its chunks, into
+ * arrays shared by all the tasks. Each record is stored at its position in the file,
+ * so the arrays end up exactly as a sequential parse would leave them.
+ * The first pass only pays off when the chunks are parsed by several processors;
+ * otherwise the section is parsed sequentially in a single pass (see parse).
+ */
+public class SeedEventParser extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+    private static final int CHUNK_SIZE = 1 << 12; // Records in a chunk, parsed by a single task
+
+    private FileChannel channel;  // The file being parsed (shared by all the tasks)
+    private long[] starts;        // Offset in the file of the first record of every chunk
+    private long end;             // Offset in the file of the byte after the last record
+    private int from;             // First chunk parsed by this task
+    private int to;               // Chunk after the last one parsed by this task
+    private int num;              // Total number of records in the section
+    private String[] events;      // Names of the events, by record
+    private int[] days;           // Days of the events, by record
+    private int[] startTimes;     // Start hours of the events, by record
+    private int[] endTimes;       // End hours of the events, by record
+    private String[][] eventUsers; // Participants of the events, by record
+
+    /**
+     * Constructor: Initializes a task that parses a range of chunks into the given arrays.
+     * @param channel The file being parsed.
+     * @param starts The offsets of the chunks, as returned by findChunks.
+     * @param end The offset of the byte after the last record (where findChunks left its tokenizer).
+     * @param from The first chunk to parse.
+     * @param to The chunk after the last one to parse.
+     * @param events The array for the names of the events.
+     * @param days The array for the days of the events.
+     * @param startTimes The array for the start hours of the events.
+     * @param endTimes The array for the end hours of the events.
+     * @param eventUsers The array for the participants of the events.
+     * @pre 0 <= from && from <= to && to <= starts.length and all arrays have one entry per record
+     */
+    public SeedEventParser(FileChannel channel, long[] starts, long end, int from, int to, String[] events,
+                           int[] days, int[] startTimes, int[] endTimes, String[][] eventUsers) {
+        this.channel = channel;
+        this.starts = starts;
+        this.end = end;
+        this.from = from;
+        this.to = to;
+        this.num = events.length;
+        this.events = events;
+        this.days = days;
+        this.startTimes = startTimes;
+        this.endTimes = endTimes;
+        this.eventUsers = eventUsers;
+    }
+
+    /**
+     * Finds where every chunk of records starts, reading the records from a tokenizer
+     * positioned at the first one. Only the participant counts are parsed; every other
+     * token is skipped without creating a String. The tokenizer is left after the last record.
+     * @param file The tokenizer of the file.
+     * @param num The number of records in the section.
+     * @return The offset in the file of the first record of every chunk.
+     * @throws java.util.NoSuchElementException If the file ends before the last record.
+     * @pre file != null && num >= 0 and file reads a file
+     */
+    public static long[] findChunks(Tokenizer file, int num) {
+        long[] starts = new long[(num + CHUNK_SIZE - 1) / CHUNK_SIZE];
+        for (int i = 0; i < num; i++) {
+            if (i % CHUNK_SIZE == 0) {
+                starts[i / CHUNK_SIZE] = file.getOffset();
+            }
+            // Name, day, start and end, then the participant count and the participants.
+            for (int j = 0; j < 4; j++) {
+                file.skip();
+            }
+            int participants = file.nextInt();
+            for (int j = 0; j < participants; j++) {
+                file.skip();
+            }
+        }
+        return starts;
+    }
+
+    /**
+     * Parses the chunks of this task: a single chunk directly, and a larger range by
+     * splitting it in two halves that are parsed in parallel.
+     */
+    @Override
+    protected void compute() {
+        if (to - from <= 1) {
+            parseChunks();
+        } else {
+            int middle = (from + to) >>> 1;
+            invokeAll(new SeedEventParser(channel, starts, end, from, middle, events, days, startTimes, endTimes, eventUsers),
+                    new SeedEventParser(channel, starts, end, middle, to, events, days, startTimes, endTimes, eventUsers));
+        }
+    }
+
+    /**
+     * Auxiliary method (private mutator) that parses the records of the chunks of this
+     * task in file order, with a tokenizer that maps them from the start of the first
+     * one to the start of the next chunk (or to the end of the section).
+     * The tokenizer is not closed, since the file is shared by the other tasks.
+     */
+    private void parseChunks() {
+        if (from == to) {
+            return;
+        }
+        Tokenizer file = new Tokenizer(channel, starts[from], to < starts.length ? starts[to] : end);
+        parseRecords(file, from * CHUNK_SIZE, Math.min(to * CHUNK_SIZE, num),
+                events, days, startTimes, endTimes, eventUsers);
+    }
+
+    /**
+     * Parses the whole section sequentially, in a single pass over the records and
+     * without finding the chunks first. Used when there is a single processor to
+     * parse them. The tokenizer is left after the last record.
+     * @param file The tokenizer of the file, positioned at the first record.
+     * @param events The array for the names of the events.
+     * @param days The array for the days of the events.
+     * @param startTimes The array for the start hours of the events.
+     * @param endTimes The array for the end hours of the events.
+     * @param eventUsers The array for the participants of the events.
+     * @throws java.util.NoSuchElementException If the file ends before the last record.
+     * @pre file != null and all arrays have one entry per record
+     */
+    public static void parse(Tokenizer file, String[] events, int[] days, int[] startTimes,
+                             int[] endTimes, String[][] eventUsers) {
+        parseRecords(file, 0, events.length, events, days, startTimes, endTimes, eventUsers);
+    }
+
+    /**
+     * Auxiliary method (private mutator) that parses consecutive records into the
+     * arrays, storing each one at its position in the section.
+     * @param file The tokenizer, positioned at the first record to parse.
+     * @param first The position of the first record.
+     * @param last The position after the last record.
+     * @param events The array for the names of the events.
+     * @param days The array for the days of the events.
+     * @param startTimes The array for the start hours of the events.
+     * @param endTimes The array for the end hours of the events.
+     * @param eventUsers The array for the participants of the events.
+     */
+    private static void parseRecords(Tokenizer file, int first, int last, String[] events, int[] days,
+                                     int[] startTimes, int[] endTimes, String[][] eventUsers) {
+        for (int i = first; i < last; i++) {
+            events[i] = file.next();
+            days[i] = file.nextInt();
+            startTimes[i] = file.nextInt();
+            endTimes[i] = file.nextInt();
+            eventUsers[i] = new String[file.nextInt()];
+            for (int j = 0; j < eventUsers[i].length; j++) {
+                eventUsers[i][j] = file.next();
+            }
+        }
+    }
+}
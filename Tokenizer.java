@@ -0,0 +1,279 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads whitespace-separated tokens, integers and lines from a stream of bytes,
+ * with the same results as java.util.Scanner for the input of the Calendar.
+ * The bytes are read into a large buffer, or a file is mapped into memory one
+ * window at a time, and scanned directly: integers are
+ * parsed digit by digit without creating Strings, and a String is only created
+ * for the tokens and lines that are returned. Text is decoded as UTF-8.
+ * As with Scanner, reading a token leaves the position right after it, so a
+ * following nextLine() returns the rest of that line; and an error reading the
+ * stream is treated as the end of the input.
+ * Only ASCII whitespace (the characters that Character.isWhitespace accepts
+ * below 128) separates tokens, and lines end at "\n", "\r" or "\r\n".
+ */
+public class Tokenizer {
+
+    private static final int BUFFER_SIZE = 1 << 16; // Bytes read from the stream at a time
+    private static final int WINDOW_SIZE = 1 << 30; // Bytes of a file mapped at a time (below the 2 GB limit)
+    private static final int EOF = -1;              // Returned by peek at the end of the input
+
+    private InputStream in;      // The stream being read (null when a file is mapped)
+    private FileChannel channel; // The file being mapped (null when a stream is read)
+    private long mapped;         // Offset in the file of the byte after the current window
+    private long end;            // Offset in the file of the byte after the last one to read
+    private byte[] array;        // Array of the buffer when a stream is read
+    private ByteBuffer buffer;   // Bytes read from the stream, or the mapped window of the file
+    private int position;        // Position of the next byte in the buffer
+    private int limit;           // Number of valid bytes in the buffer
+    private byte[] text;         // Bytes of the token or line being read
+
+    /**
+     * Constructor: Initializes a tokenizer at the start of a stream.
+     * @param in The stream to read.
+     * @pre in != null
+     */
+    public Tokenizer(InputStream in) {
+        this.in = in;
+        channel = null;
+        mapped = 0;
+        end = 0;
+        array = new byte[BUFFER_SIZE];
+        buffer = ByteBuffer.wrap(array);
+        position = 0;
+        limit = 0;
+        text = new byte[64];
+    }
+
+    /**
+     * Constructor: Initializes a tokenizer at the start of a file, which is mapped
+     * into memory and parsed in place instead of being copied into a buffer.
+     * Files larger than a mapping can hold are mapped in consecutive windows.
+     * @param channel The channel of the file to read.
+     * @pre channel != null
+     */
+    public Tokenizer(FileChannel channel) {
+        this(channel, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructor: Initializes a tokenizer over a range of a file, of which only that
+     * range is mapped into memory; the input ends at the end of the range (or of the
+     * file, if it comes first). Several tokenizers may read different ranges of the
+     * same file at the same time.
+     * @param channel The channel of the file to read.
+     * @param start The offset of the first byte to read.
+     * @param end The offset of the byte after the last one to read.
+     * @pre channel != null && start >= 0 && start <= end
+     */
+    public Tokenizer(FileChannel channel, long start, long end) {
+        in = null;
+        this.channel = channel;
+        mapped = start;
+        this.end = end;
+        array = null;
+        buffer = ByteBuffer.allocate(0);
+        position = 0;
+        limit = 0;
+        text = new byte[64];
+    }
+
+    /**
+     * Auxiliary method (private mutator) that replaces the exhausted buffer with the
+     * next bytes of the input: the next read of the stream, or the next window of the file.
+     * @return The number of bytes now in the buffer (0 at the end of the input).
+     */
+    private int fill() {
+        int read;
+        try {
+            if (channel != null) {
+                long size = Math.min(WINDOW_SIZE, Math.min(end, channel.size()) - mapped);
+                buffer = size > 0 ? channel.map(FileChannel.MapMode.READ_ONLY, mapped, size)
+                        : ByteBuffer.allocate(0);
+                mapped += size;
+                read = (int) size;
+            } else {
+                read = in.read(array, 0, array.length);
+            }
+        } catch (IOException e) {
+            read = EOF;
+        }
+        position = 0;
+        limit = Math.max(read, 0);
+        return limit;
+    }
+
+    /**
+     * Auxiliary method (private selector) that returns the next byte without consuming it,
+     * reading more of the input when the buffer is exhausted.
+     * @return The next byte (0 to 255), or EOF at the end of the input.
+     */
+    private int peek() {
+        if (position == limit && fill() == 0) {
+            return EOF;
+        }
+        return buffer.get(position) & 0xFF;
+    }
+
+    /**
+     * Auxiliary method (private selector) that checks if a byte separates tokens.
+     * @param b The byte (or EOF).
+     * @return true for ASCII whitespace, false otherwise.
+     */
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b >= '\t' && b <= '\r' || b >= 0x1C && b <= 0x1F;
+    }
+
+    /**
+     * Auxiliary method (private mutator) that skips the whitespace before a token.
+     * @throws NoSuchElementException If the input ends before a token.
+     */
+    private void skipWhitespace() {
+        int b = peek();
+        while (isWhitespace(b)) {
+            position++;
+            b = peek();
+        }
+        if (b == EOF) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    /**
+     * Auxiliary method (private mutator) that appends a byte to the text being read,
+     * doubling its array when full.
+     * @param length The number of bytes already in the text.
+     * @param b The byte.
+     */
+    private void append(int length, int b) {
+        if (length == text.length) {
+            byte[] temporary = new byte[text.length * 2];
+            System.arraycopy(text, 0, temporary, 0, length);
+            text = temporary;
+        }
+        text[length] = (byte) b;
+    }
+
+    /**
+     * Reads the next token: the longest sequence of non-whitespace bytes after
+     * any whitespace. The whitespace that follows it is not consumed.
+     * @return The token.
+     * @throws NoSuchElementException If there is no token left.
+     */
+    public String next() {
+        skipWhitespace();
+        int length = 0;
+        int b = peek();
+        while (b != EOF && !isWhitespace(b)) {
+            append(length++, b);
+            position++;
+            b = peek();
+        }
+        return new String(text, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Skips the next token without creating a String.
+     * @throws NoSuchElementException If there is no token left.
+     */
+    public void skip() {
+        skipWhitespace();
+        int b = peek();
+        while (b != EOF && !isWhitespace(b)) {
+            position++;
+            b = peek();
+        }
+    }
+
+    /**
+     * Returns the offset in the file of the next byte to read.
+     * @return The offset of the next byte.
+     * @pre the tokenizer reads a file (it was created with a FileChannel)
+     */
+    public long getOffset() {
+        return mapped - limit + position;
+    }
+
+    /**
+     * Reads the next token as a decimal integer, with an optional sign,
+     * without creating a String.
+     * @return The integer.
+     * @throws InputMismatchException If the token is not an integer in the int range.
+     * @throws NoSuchElementException If there is no token left.
+     */
+    public int nextInt() {
+        skipWhitespace();
+        int b = peek();
+        boolean negative = b == '-';
+        if (b == '-' || b == '+') {
+            position++;
+            b = peek();
+        }
+        // The value is accumulated as a negative number, whose range includes Integer.MIN_VALUE.
+        long value = 0;
+        int digits = 0;
+        boolean valid = true;
+        while (b != EOF && !isWhitespace(b)) {
+            if (b >= '0' && b <= '9' && valid) {
+                value = value * 10 - (b - '0');
+                valid = value >= Integer.MIN_VALUE;
+                digits++;
+            } else {
+                valid = false;
+            }
+            position++;
+            b = peek();
+        }
+        if (!valid || digits == 0 || !negative && value == Integer.MIN_VALUE) {
+            throw new InputMismatchException();
+        }
+        return (int) (negative ? value : -value);
+    }
+
+    /**
+     * Reads the rest of the current line and moves to the start of the next one.
+     * @return The text up to the end of the line, without the line terminator.
+     * @throws NoSuchElementException If the input has already ended.
+     */
+    public String nextLine() {
+        int b = peek();
+        if (b == EOF) {
+            throw new NoSuchElementException();
+        }
+        int length = 0;
+        while (b != EOF && b != '\n' && b != '\r') {
+            append(length++, b);
+            position++;
+            b = peek();
+        }
+        if (b != EOF) {
+            position++;
+            if (b == '\r' && peek() == '\n') {
+                position++;
+            }
+        }
+        return new String(text, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Closes the stream or file being read.
+     */
+    public void close() {
+        try {
+            if (channel != null) {
+                channel.close();
+            } else {
+                in.close();
+            }
+        } catch (IOException e) {
+            // As when reading, an error on the stream is treated as its end.
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Directory of the registered users of the Calendar.
+ * Every user receives a dense integer id (0, 1, 2, ... in registration order)
+ * that the Calendar uses to address its per-user data. Names are found through
+ * a hash index, so registration and lookup do not depend on the number of users,
+ * and the directory grows without a fixed maximum.
+ * Users are only ever added: the names array and the index are appended to, and
+ * replaced by larger ones when full, but never changed in place. A CalendarSnapshot
+ * can thus hold a view of the directory (see view) that costs O(1) to take and does
+ * not have to be copied when more users are registered.
+ */
+public class UserDirectory {
+
+    // Constants
+    public static final int NOT_FOUND = NameIndex.NOT_FOUND; // Id returned for unknown names
+    private static final int INITIAL_CAPACITY = 16; // Initial length of the names array
+
+    private String[] names; // Name of each user, indexed by id
+    private int size;       // Number of registered users (ids 0 to size-1 are valid)
+    private NameIndex ids;  // Id of each user, by name
+
+    /**
+     * Constructor: Initializes an empty directory.
+     */
+    public UserDirectory() {
+        names = new String[INITIAL_CAPACITY];
+        size = 0;
+        ids = new NameIndex();
+    }
+
+    /**
+     * Creates a read-only view of the directory with the users registered so far, in O(1).
+     * The view shares the names array and the index, whose entries for those users
+     * never change; the users registered afterwards are not part of it.
+     * The view may be read by another thread while this directory keeps registering users.
+     * @return A new directory that sees the current users only.
+     */
+    public UserDirectory view() {
+        UserDirectory directory = new UserDirectory();
+        directory.names = names;
+        directory.size = size;
+        directory.ids = ids.view();
+        return directory;
+    }
+
+    /**
+     * Returns the number of registered users.
+     * @return The number of users (also the next id to be assigned).
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the id of a user.
+     * @param name The name of the user.
+     * @return The id of the user, or NOT_FOUND if the name is not registered.
+     * @pre name != null
+     */
+    public int getId(String name) {
+        int id = ids.get(name);
+        // A view may find a user registered after it was taken, or even read its entry
+        // half written: the id is then not below the size of the view, or not that user's.
+        if (id == NOT_FOUND || id >= size || !names[id].equals(name)) {
+            return NOT_FOUND;
+        }
+        return id;
+    }
+
+    /**
+     * Returns the name of a user.
+     * @param id The id of the user.
+     * @return The name registered with that id.
+     * @pre id >= 0 && id < size()
+     */
+    public String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * Makes sure the directory can hold a given number of users without growing again
+     * (used before bulk loads of known size, such as the initial file).
+     * @param capacity The number of users the directory must be able to hold.
+     * @pre capacity >= 0
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > names.length) {
+            String[] temporary = new String[capacity];
+            System.arraycopy(names, 0, temporary, 0, size);
+            names = temporary;
+        }
+        ids.ensureCapacity(capacity);
+    }
+
+    /**
+     * Registers a new user, assigning it the next free id.
+     * If the names array is full its capacity is doubled first.
+     * @param name The name of the user.
+     * @return The id assigned to the user.
+     * @pre name != null && getId(name) == NOT_FOUND
+     */
+    public int register(String name) {
+        if (size == names.length) {
+            String[] temporary = new String[names.length * 2];
+            System.arraycopy(names, 0, temporary, 0, size);
+            names = temporary;
+        }
+        names[size] = name;
+        ids.put(name, size);
+        return size++;
+    }
+}